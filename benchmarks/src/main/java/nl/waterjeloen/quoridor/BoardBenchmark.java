@@ -0,0 +1,153 @@
+package nl.waterjeloen.quoridor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+    @Param({ "5", "9", "13", "17" })
+    public int size;
+
+    @Param({ "empty", "walls" })
+    public String layout;
+
+    private Board board;
+    private ReferenceBoard reference;
+    private Location start;
+    private long[] reachable;
+    private int[] moves;
+    private int pawnMove;
+
+    @Setup
+    public void setUp() {
+        board = Positions.board(size, layout);
+        reference = Positions.reference(board);
+        start = board.getPlayer(0).getLocation();
+        reachable = new long[(size * size + 63) / 64];
+        moves = new int[board.getMoves().getMaxMoves()];
+        pawnMove = (board.getMoves().generatePawnMoves(moves, 0) > 0) ? moves[0] : Move.NONE;
+        if (layout.equals("walls") && (board.getMoves().generateWalls(moves, 0) == 0)) {
+            throw new IllegalStateException("the walls layout of size " + size + " leaves no wall to place");
+        }
+    }
+
+    @Benchmark
+    public Set<Location> reachableReference() {
+        return reference.getReachableLocations(start);
+    }
+
+    @Benchmark
+    public Set<Location> reachable() {
+        return board.getReachableLocations(start);
+    }
+
+    @Benchmark
+    public int fillReachable() {
+        return board.getPaths().fillReachable(board.cell(start), reachable);
+    }
+
+    @Benchmark
+    public int hasWallReference() {
+        int count = 0;
+        for (int r = 0; r < size; ++r) {
+            for (int c = 0; c < size; ++c) {
+                for (Direction direction : Direction.values()) {
+                    if (reference.hasWall(new Location(r, c), direction)) {
+                        ++count;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int hasWall() {
+        int count = 0;
+        for (int r = 0; r < size; ++r) {
+            for (int c = 0; c < size; ++c) {
+                for (Direction direction : Direction.values()) {
+                    if (board.hasWall(new Location(r, c), direction)) {
+                        ++count;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int hasWallCell() {
+        int count = 0;
+        for (int cell = 0; cell < size * size; ++cell) {
+            for (Direction direction : Direction.values()) {
+                if (board.hasWall(cell, direction)) {
+                    ++count;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int generateWalls() {
+        return board.getMoves().generate(moves);
+    }
+
+    @Benchmark
+    public int placeWall() {
+        final int count = board.getMoves().generate(moves);
+        int placed = 0;
+        for (int i = 0; i < count; ++i) {
+            if (Move.isWall(moves[i])) {
+                board.makeMove(moves[i]);
+                placed += board.getPaths().distanceToGoal(0);
+                board.unmakeMove();
+            }
+        }
+        return placed;
+    }
+
+    @Benchmark
+    public int measureWalls() {
+        final int count = board.getMoves().generate(moves);
+        int measured = 0;
+        for (int i = 0; i < count; ++i) {
+            if (Move.isWall(moves[i])) {
+                measured += board.getWallImpact().distanceWith(0, moves[i]);
+            }
+        }
+        return measured;
+    }
+
+    @Benchmark
+    public Board copy() {
+        return board.copy();
+    }
+
+    // Takes a snapshot after every move, as a game does for its spectators; taking it back makes it two.
+    @Benchmark
+    public Snapshot snapshot() {
+        board.makeMove(pawnMove);
+        board.snapshot();
+        board.unmakeMove();
+        return board.snapshot();
+    }
+}
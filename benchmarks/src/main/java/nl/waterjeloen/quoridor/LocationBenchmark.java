@@ -0,0 +1,72 @@
+package nl.waterjeloen.quoridor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocationBenchmark {
+    @Param({ "5", "9", "13", "17" })
+    public int size;
+
+    private Board board;
+
+    @Setup
+    public void setUp() {
+        board = Positions.board(size, "empty");
+    }
+
+    @Benchmark
+    public int neighbors() {
+        int sum = 0;
+        for (int r = 0; r < size; ++r) {
+            for (int c = 0; c < size; ++c) {
+                final Location location = Location.of(r, c);
+                for (Direction direction : Direction.values()) {
+                    sum += location.go(direction).hashCode();
+                }
+                sum += location.left(2).hashCode() + location.up(2).hashCode();
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int wallHighlights() {
+        final Map<Location, Location> walls = new HashMap<>();
+        for (int r = 0; r < size - 1; ++r) {
+            for (int c = 0; c < size - 1; ++c) {
+                final Location location = Location.of(r, c);
+                walls.put(location, location);
+                walls.put(location.right(), location);
+            }
+        }
+        return walls.size();
+    }
+
+    @Benchmark
+    public int boardLocations() {
+        int sum = 0;
+        for (int cell = 0; cell < size * size; ++cell) {
+            sum += board.location(cell).hashCode();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,51 @@
+package nl.waterjeloen.quoridor;
+
+import java.util.SplittableRandom;
+
+final class Positions {
+    private static final long SEED = 42;
+    private static final int WALL_PERCENT = 60;
+
+    private Positions() {
+    }
+
+    static Board board(int size, String layout) {
+        final Board board = new Board(size, me(size), you(size));
+        if (layout.equals("walls")) {
+            // Random walls take away most of the places for a wall, but they are put on the board without
+            // taking them from the players, so the player to move can still place the walls that are left.
+            final SplittableRandom random = new SplittableRandom(SEED);
+            final int[] moves = new int[board.getMoves().getMaxMoves()];
+            int count = board.getMoves().generateWalls(moves, 0);
+            final int left = count * (100 - WALL_PERCENT) / 100;
+            while (count > left) {
+                board.placeWall(moves[random.nextInt(count)]);
+                count = board.getMoves().generateWalls(moves, 0);
+            }
+        }
+        return board;
+    }
+
+    static ReferenceBoard reference(Board board) {
+        final int size = board.getSize();
+        final ReferenceBoard reference = new ReferenceBoard(size, me(size), you(size));
+        for (int slot = 0; slot < board.getWallSlotCount(); ++slot) {
+            final Location location = new Location(board.wallRow(slot), board.wallColumn(slot));
+            if (board.hasHorizontalWall(slot)) {
+                reference.addHorizontalWall(location);
+            }
+            if (board.hasVerticalWall(slot)) {
+                reference.addVerticalWall(location);
+            }
+        }
+        return reference;
+    }
+
+    private static Player me(int size) {
+        return new Player("me", new Location(0, size / 2), location -> location.row == size - 1);
+    }
+
+    private static Player you(int size) {
+        return new Player("you", new Location(size - 1, size / 2), location -> location.row == 0);
+    }
+}
@@ -0,0 +1,62 @@
+package nl.waterjeloen.quoridor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Time to search a fixed depth with the parallel search; the speedup is the ratio to the 1-thread score.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SearchBenchmark {
+    private static final int SIZE = 9;
+
+    @Param({ "1", "2", "4", "8", "16" })
+    public int threads;
+
+    @Param({ "3" })
+    public int depth;
+
+    private Board board;
+    private ParallelSearch search;
+
+    @Setup(Level.Trial)
+    public void setUpBoard() {
+        board = Positions.board(SIZE, "empty");
+        board.movePlayer(new Location(1, SIZE / 2));
+        board.movePlayer(new Location(SIZE - 2, SIZE / 2));
+        board.addHorizontalWall(new Location(SIZE - 3, SIZE / 2 - 1));
+        board.addHorizontalWall(new Location(1, SIZE / 2));
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpSearch() {
+        search = new ParallelSearch(threads, 3_600_000, depth,
+            new TranspositionTable(64, TranspositionTable.Replacement.TWO_TIER));
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownSearch() {
+        search.shutdown();
+    }
+
+    @Benchmark
+    public SearchResult search() {
+        return search.search(board);
+    }
+}
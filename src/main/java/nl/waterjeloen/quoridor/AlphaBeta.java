@@ -0,0 +1,365 @@
+package nl.waterjeloen.quoridor;
+
+import java.util.Arrays;
+
+public class AlphaBeta implements Strategy {
+    public static final int WIN = 30000;
+
+    static final int INFINITY = 32000;
+    static final int MAX_PLY = 64;
+    // Evaluations stay below the scores of wins, so they are never taken for one.
+    static final int MAX_EVALUATION = WIN - MAX_PLY - 1;
+    private static final int PATH_WEIGHT = 100;
+    private static final int WALL_WEIGHT = 10;
+    private static final int TABLE_MOVE = 1 << 20;
+    private static final long UNLIMITED = Long.MAX_VALUE;
+    private static final SearchListener NONE = new SearchListener() {
+        @Override
+        public void searched(SearchResult result) {
+        }
+
+        @Override
+        public boolean stop(long nodes) {
+            return false;
+        }
+    };
+
+    private final long budget;
+    private final int maxDepth;
+    private final TranspositionTable table;
+    private final LinearEvaluator evaluator;
+    private final int[] features;
+
+    private Board board;
+    private Features extractor;
+    private SearchListener listener;
+    private int[][] moves;
+    private int[][] scores;
+    private int rootMove;
+    private long nodes;
+    private long deadline;
+    private boolean aborted;
+
+    public AlphaBeta(long millis) {
+        this(millis, MAX_PLY - 1, new TranspositionTable(64, TranspositionTable.Replacement.TWO_TIER));
+    }
+
+    public AlphaBeta(long millis, int maxDepth, TranspositionTable table) {
+        this(millis, maxDepth, table, null);
+    }
+
+    // Scores the positions at the leaves with the evaluator instead of the path and wall difference.
+    public AlphaBeta(long millis, int maxDepth, TranspositionTable table, LinearEvaluator evaluator) {
+        this.budget = millis * 1_000_000;
+        this.maxDepth = Math.min(maxDepth, MAX_PLY - 1);
+        this.table = table;
+        this.evaluator = evaluator;
+        this.features = new int[Features.COUNT];
+    }
+
+    @Override
+    public int selectMove(Board board) {
+        return search(board).getMove();
+    }
+
+    public SearchResult search(Board board) {
+        return search(board, budget, NONE);
+    }
+
+    // Searches until the listener stops it, or until the budget of the engine is used when limited is set.
+    public SearchResult search(Board board, boolean limited, SearchListener listener) {
+        return search(board, limited ? budget : UNLIMITED, listener);
+    }
+
+    private SearchResult search(Board board, long budget, SearchListener listener) {
+        final long start = System.nanoTime();
+        prepare(board);
+        this.listener = listener;
+        nodes = 0;
+        deadline = Long.MAX_VALUE;
+        aborted = false;
+        table.newSearch();
+
+        int bestMove = Move.NONE;
+        int bestScore = 0;
+        int depth = 0;
+        int[] line = new int[0];
+        while (depth < maxDepth) {
+            final int score = searchRoot(depth + 1, bestMove);
+            if (aborted) {
+                break;
+            }
+            ++depth;
+            deadline = (budget == UNLIMITED) ? Long.MAX_VALUE : start + budget;
+            bestScore = score;
+            bestMove = rootMove;
+            line = line(bestMove, depth);
+            if (listener != NONE) {
+                listener.searched(new SearchResult(bestMove, bestScore, depth, nodes, System.nanoTime() - start, line));
+            }
+            if (Math.abs(bestScore) >= WIN - MAX_PLY) {
+                break;
+            }
+        }
+        if (Metrics.ENABLED) {
+            Metrics.SEARCH_NODES.add(nodes);
+            Metrics.SEARCH_TIME.record(System.nanoTime() - start);
+        }
+        return new SearchResult(bestMove, bestScore, depth, nodes, System.nanoTime() - start, line);
+    }
+
+    void begin(Board board, long deadline) {
+        prepare(board);
+        this.listener = NONE;
+        this.deadline = deadline;
+        this.aborted = false;
+    }
+
+    int rootMoves(int previousBest, int[] result) {
+        final int count = orderedMoves(0, previousBest);
+        System.arraycopy(moves[0], 0, result, 0, count);
+        return count;
+    }
+
+    int searchMove(int move, int depth, int alpha) {
+        board.makeMove(move);
+        final int score = -negamax(depth - 1, -INFINITY, -alpha, 1);
+        board.unmakeMove();
+        return score;
+    }
+
+    // Orders the moves of the position on the board, which lies ply moves below the root, with the move the
+    // table holds for it first.
+    int nodeMoves(int ply, int[] result) {
+        final long entry = table.probe(board.getHash());
+        final int count = orderedMoves(ply, (entry != TranspositionTable.MISS) ? TranspositionTable.move(entry) : Move.NONE);
+        System.arraycopy(moves[ply], 0, result, 0, count);
+        return count;
+    }
+
+    // Searches the position on the board, which lies ply moves below the root, within the window.
+    int searchNode(int depth, int alpha, int beta, int ply) {
+        return negamax(depth, alpha, beta, ply);
+    }
+
+    // Stores the score of the position on the board that was searched by other threads within the window.
+    void storeNode(int move, int score, int depth, int alpha, int beta, int ply) {
+        final int bound = (score <= alpha) ? TranspositionTable.UPPER
+            : (score >= beta) ? TranspositionTable.LOWER
+            : TranspositionTable.EXACT;
+        table.store(board.getHash(), move, toTable(score, ply), depth, bound);
+    }
+
+    boolean isAborted() {
+        return aborted;
+    }
+
+    long getNodes() {
+        return nodes;
+    }
+
+    long getBudget() {
+        return budget;
+    }
+
+    TranspositionTable getTable() {
+        return table;
+    }
+
+    private int searchRoot(int depth, int previousBest) {
+        final int count = orderedMoves(0, previousBest);
+        int alpha = -INFINITY;
+        rootMove = (count > 0) ? moves[0][0] : Move.NONE;
+        for (int i = 0; i < count; ++i) {
+            board.makeMove(moves[0][i]);
+            final int score = -negamax(depth - 1, -INFINITY, -alpha, 1);
+            board.unmakeMove();
+            if (aborted) {
+                break;
+            }
+            if (score > alpha) {
+                alpha = score;
+                rootMove = moves[0][i];
+            }
+        }
+        if (!aborted) {
+            table.store(board.getHash(), rootMove, toTable(alpha, 0), depth, TranspositionTable.EXACT);
+        }
+        return alpha;
+    }
+
+    private int negamax(int depth, int alpha, int beta, int ply) {
+        ++nodes;
+        if (board.isFinished()) {
+            return -WIN + ply;
+        }
+        if (((nodes & 1023) == 0) && ((System.nanoTime() > deadline) || listener.stop(nodes))) {
+            aborted = true;
+        }
+        if (aborted) {
+            return 0;
+        }
+        if ((depth <= 0) || (ply >= MAX_PLY - 1)) {
+            return evaluate();
+        }
+
+        final long key = board.getHash();
+        final long entry = table.probe(key);
+        int tableMove = Move.NONE;
+        if (entry != TranspositionTable.MISS) {
+            tableMove = TranspositionTable.move(entry);
+            if (TranspositionTable.depth(entry) >= depth) {
+                final int score = fromTable(TranspositionTable.score(entry), ply);
+                switch (TranspositionTable.bound(entry)) {
+                    case TranspositionTable.EXACT:
+                        return score;
+                    case TranspositionTable.LOWER:
+                        alpha = Math.max(alpha, score);
+                        break;
+                    default:
+                        beta = Math.min(beta, score);
+                        break;
+                }
+                if (alpha >= beta) {
+                    return score;
+                }
+            }
+        }
+
+        final int count = orderedMoves(ply, tableMove);
+        if (count == 0) {
+            return evaluate();
+        }
+
+        final int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = Move.NONE;
+        for (int i = 0; i < count; ++i) {
+            board.makeMove(moves[ply][i]);
+            final int score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+            board.unmakeMove();
+            if (aborted) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                bestMove = moves[ply][i];
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        final int bound = (best <= originalAlpha) ? TranspositionTable.UPPER
+            : (best >= beta) ? TranspositionTable.LOWER
+            : TranspositionTable.EXACT;
+        table.store(key, bestMove, toTable(best, ply), depth, bound);
+        return best;
+    }
+
+    // Follows the moves the table holds for the best move, as far as they are legal and not deeper than
+    // the search went.
+    private int[] line(int bestMove, int depth) {
+        final int[] line = new int[depth];
+        int length = 0;
+        int move = bestMove;
+        while ((length < depth) && (move != Move.NONE) && board.getMoves().isLegal(move)) {
+            line[length++] = move;
+            board.makeMove(move);
+            final long entry = table.probe(board.getHash());
+            move = (entry != TranspositionTable.MISS) ? TranspositionTable.move(entry) : Move.NONE;
+        }
+        for (int i = 0; i < length; ++i) {
+            board.unmakeMove();
+        }
+        return Arrays.copyOf(line, length);
+    }
+
+    // Scores the position for the player to move by how much shorter its path to the goal is. With more
+    // than two players, the one closest to its goal counts as the opponent.
+    private int evaluate() {
+        if (evaluator != null) {
+            extractor.extract(features, 0);
+            return Math.max(-MAX_EVALUATION, Math.min(evaluator.evaluate(features, 0), MAX_EVALUATION));
+        }
+        final PathFinder paths = board.getPaths();
+        final int me = board.getCurrentPlayerIndex();
+        final int opponent = closestOpponent(board, me);
+        return PATH_WEIGHT * (paths.distanceToGoal(opponent) - paths.distanceToGoal(me))
+            + WALL_WEIGHT * (board.getPlayer(me).getWalls() - board.getPlayer(opponent).getWalls());
+    }
+
+    // Generates the moves at this ply, best first: the table move, then by how much they improve the
+    // difference between the shortest paths of both players. Walls are measured without placing them.
+    private int orderedMoves(int ply, int tableMove) {
+        final int[] buffer = moves[ply];
+        final int[] score = scores[ply];
+        final int count = board.getMoves().generate(buffer);
+
+        final PathFinder paths = board.getPaths();
+        final WallImpact impact = board.getWallImpact();
+        final int me = board.getCurrentPlayerIndex();
+        final int opponent = closestOpponent(board, me);
+        final int myDistance = paths.distanceToGoal(me);
+        final int opponentDistance = paths.distanceToGoal(opponent);
+        for (int i = 0; i < count; ++i) {
+            final int move = buffer[i];
+            if (move == tableMove) {
+                score[i] = TABLE_MOVE;
+            } else if (Move.isPawn(move)) {
+                score[i] = myDistance - paths.distanceToGoal(me, Move.index(move));
+            } else {
+                score[i] = (impact.distanceWith(opponent, move) - opponentDistance) - (impact.distanceWith(me, move) - myDistance);
+            }
+        }
+
+        for (int i = 1; i < count; ++i) {
+            final int move = buffer[i];
+            final int value = score[i];
+            int j = i - 1;
+            while ((j >= 0) && (score[j] < value)) {
+                buffer[j + 1] = buffer[j];
+                score[j + 1] = score[j];
+                --j;
+            }
+            buffer[j + 1] = move;
+            score[j + 1] = value;
+        }
+        return count;
+    }
+
+    // Returns the opponent closest to its goal, the first one after the player when they are equally close.
+    static int closestOpponent(Board board, int me) {
+        final PathFinder paths = board.getPaths();
+        int opponent = (me + 1) % board.getPlayerCount();
+        for (int other = (opponent + 1) % board.getPlayerCount(); other != me; other = (other + 1) % board.getPlayerCount()) {
+            if (paths.distanceToGoal(other) < paths.distanceToGoal(opponent)) {
+                opponent = other;
+            }
+        }
+        return opponent;
+    }
+
+    private void prepare(Board board) {
+        final int maxMoves = board.getMoves().getMaxMoves();
+        if ((moves == null) || (moves[0].length < maxMoves)) {
+            moves = new int[MAX_PLY][maxMoves];
+            scores = new int[MAX_PLY][maxMoves];
+        }
+        if ((evaluator != null) && ((extractor == null) || (extractor.getBoard() != board))) {
+            extractor = new Features(board);
+        }
+        this.board = board;
+    }
+
+    private static int toTable(int score, int ply) {
+        return (score >= WIN - MAX_PLY) ? score + ply : (score <= -WIN + MAX_PLY) ? score - ply : score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        return (score >= WIN - MAX_PLY) ? score - ply : (score <= -WIN + MAX_PLY) ? score + ply : score;
+    }
+}
@@ -0,0 +1,306 @@
+package nl.waterjeloen.quoridor;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Scores every position of the games in archives and writes the results as columns. Every thread takes
+// the next game, plays it on a board of its own while decoding it, and then takes the moves back one at
+// a time, searching each position on the way, so no position is set up from the start. The writer puts
+// the games back in order; a thread may only run a few games ahead of it, so the threads wait when it
+// falls behind. Every game starts with an empty table, which makes the output the same for any number
+// of threads.
+//
+//   Analysis [--depth 2] [--threads n] output archive...
+//
+// The output is a header followed by blocks of rows; a block stores its columns one after the other:
+//
+//   header: magic (u32), version (u8), board size (u8), players (u8), reserved (u8)
+//   block:  rows (u32), game (u32), ply (u16), player to move (u8), move played (u32), best move (u32),
+//           score for the player to move (i16), depth searched (u8), then per player the distance to the
+//           goal (u16) and the walls left (u8)
+public class Analysis implements Closeable {
+    private static final int MAGIC = 0x51414E31;
+    private static final int VERSION = 1;
+    private static final int BLOCK_ROWS = 1 << 14;
+    private static final int WINDOW_PER_THREAD = 4;
+    private static final long UNLIMITED = 24 * 60 * 60 * 1000;
+
+    private final DataOutputStream output;
+    private final int depth;
+    private final int threads;
+    private int size;
+    private int playerCount;
+    private int games;
+    private long positions;
+
+    private int rows;
+    private int[] game;
+    private short[] ply;
+    private byte[] player;
+    private int[] played;
+    private int[] best;
+    private short[] score;
+    private byte[] searched;
+    private short[][] distance;
+    private byte[][] walls;
+
+    public Analysis(Path path, int depth, int threads) throws IOException {
+        this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+        this.depth = depth;
+        this.threads = threads;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int depth = 2;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path output = null;
+        final List<Path> archives = new ArrayList<>();
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--depth":
+                    depth = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    if (output == null) {
+                        output = Path.of(args[i]);
+                    } else {
+                        archives.add(Path.of(args[i]));
+                    }
+                    break;
+            }
+        }
+        if ((output == null) || archives.isEmpty()) {
+            System.err.println("usage: Analysis [--depth 2] [--threads n] output archive...");
+            System.exit(1);
+        }
+
+        final long start = System.nanoTime();
+        try (Analysis analysis = new Analysis(output, depth, threads)) {
+            for (Path archive : archives) {
+                try (GameReader reader = new GameReader(archive)) {
+                    analysis.add(reader);
+                }
+            }
+            final double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf(Locale.ROOT, "%d positions of %d games in %.1f s on %d threads (%.0f positions/s)%n",
+                analysis.getPositions(), analysis.getGames(), seconds, threads, analysis.getPositions() / seconds);
+        }
+    }
+
+    public int getGames() {
+        return games;
+    }
+
+    public long getPositions() {
+        return positions;
+    }
+
+    // Analyzes all games of an archive. All archives must be for the same board and number of players.
+    public void add(GameReader reader) throws IOException, InterruptedException {
+        if (size == 0) {
+            start(reader.getSize(), reader.getPlayerCount());
+        } else if ((reader.getSize() != size) || (reader.getPlayerCount() != playerCount)) {
+            throw new IllegalArgumentException("the archives are not all for the same board and players");
+        }
+
+        final int window = WINDOW_PER_THREAD * threads;
+        final Semaphore ahead = new Semaphore(window);
+        final AtomicInteger next = new AtomicInteger();
+        final BlockingQueue<Game> results = new ArrayBlockingQueue<>(window);
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int i = 0; i < threads; ++i) {
+                pool.execute(() -> work(reader, ahead, next, results));
+            }
+            final Game[] pending = new Game[window];
+            int written = 0;
+            while (written < reader.getGameCount()) {
+                final Game result = results.take();
+                if (result.error != null) {
+                    throw new IllegalStateException("cannot analyze game " + result.index, result.error);
+                }
+                pending[result.index % window] = result;
+                while ((written < reader.getGameCount()) && (pending[written % window] != null)) {
+                    write(pending[written % window], games);
+                    pending[written % window] = null;
+                    ++written;
+                    ahead.release();
+                }
+            }
+            games += reader.getGameCount();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void work(GameReader reader, Semaphore ahead, AtomicInteger next, BlockingQueue<Game> results) {
+        final Board board = Board.create(size, playerCount);
+        final TranspositionTable table = new TranspositionTable(4, TranspositionTable.Replacement.TWO_TIER);
+        final AlphaBeta engine = new AlphaBeta(UNLIMITED, depth, table);
+        int[] moves = new int[256];
+        try {
+            while (true) {
+                ahead.acquire();
+                final int index = next.getAndIncrement();
+                if (index >= reader.getGameCount()) {
+                    return;
+                }
+                table.clear();
+                Game result;
+                try {
+                    if (moves.length < reader.getPlies(index)) {
+                        moves = new int[reader.getPlies(index)];
+                    }
+                    result = analyze(reader, index, board, engine, moves);
+                } catch (RuntimeException e) {
+                    result = new Game(index, 0, playerCount);
+                    result.error = e;
+                }
+                results.put(result);
+                if (result.error != null) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            // the analysis was given up
+        }
+    }
+
+    private Game analyze(GameReader reader, int index, Board board, AlphaBeta engine, int[] moves) {
+        final int plies = reader.read(index, board, moves);
+        final Game result = new Game(index, plies, playerCount);
+        for (int ply = plies - 1; ply >= 0; --ply) {
+            board.unmakeMove();
+            result.player[ply] = (byte) board.getCurrentPlayerIndex();
+            result.played[ply] = moves[ply];
+            for (int p = 0; p < playerCount; ++p) {
+                result.distance[p][ply] = (short) Math.min(board.getPaths().distanceToGoal(p), 0xFFFF);
+                result.walls[p][ply] = (byte) board.getPlayer(p).getWalls();
+            }
+            final SearchResult search = engine.search(board);
+            result.best[ply] = search.getMove();
+            result.score[ply] = (short) search.getScore();
+            result.searched[ply] = (byte) search.getDepth();
+        }
+        return result;
+    }
+
+    private void start(int size, int playerCount) throws IOException {
+        this.size = size;
+        this.playerCount = playerCount;
+        this.game = new int[BLOCK_ROWS];
+        this.ply = new short[BLOCK_ROWS];
+        this.player = new byte[BLOCK_ROWS];
+        this.played = new int[BLOCK_ROWS];
+        this.best = new int[BLOCK_ROWS];
+        this.score = new short[BLOCK_ROWS];
+        this.searched = new byte[BLOCK_ROWS];
+        this.distance = new short[playerCount][BLOCK_ROWS];
+        this.walls = new byte[playerCount][BLOCK_ROWS];
+        output.writeInt(MAGIC);
+        output.writeByte(VERSION);
+        output.writeByte(size);
+        output.writeByte(playerCount);
+        output.writeByte(0);
+    }
+
+    private void write(Game result, int offset) throws IOException {
+        for (int i = 0; i < result.plies; ++i) {
+            if (rows == BLOCK_ROWS) {
+                flush();
+            }
+            game[rows] = offset + result.index;
+            ply[rows] = (short) i;
+            player[rows] = result.player[i];
+            played[rows] = result.played[i];
+            best[rows] = result.best[i];
+            score[rows] = result.score[i];
+            searched[rows] = result.searched[i];
+            for (int p = 0; p < playerCount; ++p) {
+                distance[p][rows] = result.distance[p][i];
+                walls[p][rows] = result.walls[p][i];
+            }
+            ++rows;
+        }
+        positions += result.plies;
+    }
+
+    private void flush() throws IOException {
+        if (rows == 0) {
+            return;
+        }
+        output.writeInt(rows);
+        for (int i = 0; i < rows; ++i) {
+            output.writeInt(game[i]);
+        }
+        for (int i = 0; i < rows; ++i) {
+            output.writeShort(ply[i]);
+        }
+        output.write(player, 0, rows);
+        for (int i = 0; i < rows; ++i) {
+            output.writeInt(played[i]);
+        }
+        for (int i = 0; i < rows; ++i) {
+            output.writeInt(best[i]);
+        }
+        for (int i = 0; i < rows; ++i) {
+            output.writeShort(score[i]);
+        }
+        output.write(searched, 0, rows);
+        for (int p = 0; p < playerCount; ++p) {
+            for (int i = 0; i < rows; ++i) {
+                output.writeShort(distance[p][i]);
+            }
+            output.write(walls[p], 0, rows);
+        }
+        rows = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        output.close();
+    }
+
+    // The results of one game, a column per field and a row per ply.
+    private static class Game {
+        private final int index;
+        private final int plies;
+        private final byte[] player;
+        private final int[] played;
+        private final int[] best;
+        private final short[] score;
+        private final byte[] searched;
+        private final short[][] distance;
+        private final byte[][] walls;
+        private RuntimeException error;
+
+        private Game(int index, int plies, int playerCount) {
+            this.index = index;
+            this.plies = plies;
+            this.player = new byte[plies];
+            this.played = new int[plies];
+            this.best = new int[plies];
+            this.score = new short[plies];
+            this.searched = new byte[plies];
+            this.distance = new short[playerCount][plies];
+            this.walls = new byte[playerCount][plies];
+        }
+    }
+}
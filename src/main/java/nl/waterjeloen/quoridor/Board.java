@@ -1,25 +1,171 @@
 package nl.waterjeloen.quoridor;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 public class Board {
+    public static final int MIN_PLAYERS = 2;
+    public static final int MAX_PLAYERS = 4;
+
+    static final int EDGE_SHIFT = 4;
+    private static final int TOTAL_WALLS = 20;
+    private static final String[] NAMES = { "first", "second", "third", "fourth" };
+    private static final Direction[][] SEATS = {
+        { Direction.UP, Direction.DOWN },
+        { Direction.UP, Direction.RIGHT, Direction.DOWN },
+        { Direction.UP, Direction.RIGHT, Direction.DOWN, Direction.LEFT }
+    };
+
     private final int size;
+    private final int wallSize;
     private final List<Player> players;
+    private final int[] playerCells;
     private int currentPlayer;
-    private final boolean[][] horizontalWalls;
-    private final boolean[][] verticalWalls;
+    private long[] horizontalWalls;
+    private long[] verticalWalls;
+    private byte[] sides;
+    private final Geometry geometry;
+    private final Location[] locations;
+    private final long[][] goals;
+    private final PathFinder paths;
+    private final WallImpact impact;
+    private final MoveGenerator moves;
+    private final Zobrist zobrist;
 
     private boolean finished;
+    private long hash;
+    private long wallHash;
+    private int[] history;
+    private long[] hashHistory;
+    private int historySize;
+    private boolean wallsShared;
+    private Snapshot snapshot;
 
-    public Board(int size, Player player1, Player player2) {
+    public Board(int size, Player... players) {
+        if ((players.length < MIN_PLAYERS) || (players.length > MAX_PLAYERS)) {
+            throw new IllegalArgumentException("a board takes " + MIN_PLAYERS + " to " + MAX_PLAYERS + " players");
+        }
         this.size = size;
-        this.players = List.of(player1, player2);
+        this.wallSize = size - 1;
+        this.players = List.of(players);
+        this.playerCells = new int[this.players.size()];
+        for (int i = 0; i < playerCells.length; ++i) {
+            playerCells[i] = cell(this.players.get(i).getLocation());
+        }
         this.currentPlayer = 0;
-        this.horizontalWalls = new boolean[size - 1][size - 1];
-        this.verticalWalls = new boolean[size - 1][size - 1];
+        this.horizontalWalls = new long[Bits.words(wallSize * wallSize)];
+        this.verticalWalls = new long[Bits.words(wallSize * wallSize)];
+        this.geometry = Geometry.of(size);
+        this.sides = new byte[size * size];
+        for (int cell = 0; cell < size * size; ++cell) {
+            sides[cell] = (byte) (geometry.edges(cell) << EDGE_SHIFT);
+        }
+        this.locations = new Location[size * size];
+        for (int cell = 0; cell < size * size; ++cell) {
+            locations[cell] = Location.of(row(cell), column(cell));
+        }
+        this.goals = new long[this.players.size()][Bits.words(size * size)];
+        for (int i = 0; i < goals.length; ++i) {
+            for (int cell = 0; cell < size * size; ++cell) {
+                if (this.players.get(i).winsAt(location(cell))) {
+                    Bits.set(goals[i], cell);
+                }
+            }
+        }
+        this.paths = new PathFinder(this, this.players.size());
+        this.impact = new WallImpact(this, this.players.size());
+        this.moves = new MoveGenerator(this, this.players.size());
         this.finished = false;
+        this.history = new int[64];
+        this.hashHistory = new long[32];
+        this.historySize = 0;
+        int maxWalls = 0;
+        for (Player player : this.players) {
+            maxWalls = Math.max(maxWalls, player.getWalls());
+        }
+        this.zobrist = new Zobrist(size, this.players.size(), maxWalls);
+        this.hash = computeHash();
+    }
+
+    private Board(Board other) {
+        this.size = other.size;
+        this.wallSize = other.wallSize;
+        final Player[] copies = new Player[other.players.size()];
+        for (int i = 0; i < copies.length; ++i) {
+            copies[i] = other.players.get(i).copy();
+        }
+        this.players = List.of(copies);
+        this.playerCells = other.playerCells.clone();
+        this.currentPlayer = other.currentPlayer;
+        this.horizontalWalls = other.horizontalWalls.clone();
+        this.verticalWalls = other.verticalWalls.clone();
+        this.sides = other.sides.clone();
+        this.geometry = other.geometry;
+        this.locations = other.locations;
+        this.goals = other.goals;
+        this.paths = new PathFinder(this, players.size());
+        this.impact = new WallImpact(this, players.size());
+        this.moves = new MoveGenerator(this, players.size());
+        this.zobrist = other.zobrist;
+        this.finished = other.finished;
+        this.hash = other.hash;
+        this.wallHash = other.wallHash;
+        this.history = other.history.clone();
+        this.hashHistory = other.hashHistory.clone();
+        this.historySize = other.historySize;
+    }
+
+    // Sets up the standard game: the players start in the middle of an edge, take turns clockwise starting
+    // at the top, race to the opposite edge, and share twenty walls evenly.
+    public static Board create(int size, int playerCount) {
+        if ((playerCount < MIN_PLAYERS) || (playerCount > MAX_PLAYERS)) {
+            throw new IllegalArgumentException("a board takes " + MIN_PLAYERS + " to " + MAX_PLAYERS + " players");
+        }
+        final Player[] players = new Player[playerCount];
+        for (int i = 0; i < playerCount; ++i) {
+            players[i] = seat(size, SEATS[playerCount - MIN_PLAYERS][i], NAMES[i], TOTAL_WALLS / playerCount);
+        }
+        return new Board(size, players);
+    }
+
+    private static Player seat(int size, Direction edge, String name, int walls) {
+        final int middle = size / 2;
+        switch (edge) {
+            case UP:
+                return new Player(name, Location.of(0, middle), location -> location.row == size - 1, walls);
+            case DOWN:
+                return new Player(name, Location.of(size - 1, middle), location -> location.row == 0, walls);
+            case RIGHT:
+                return new Player(name, Location.of(middle, size - 1), location -> location.column == 0, walls);
+            default:
+                return new Player(name, Location.of(middle, 0), location -> location.column == size - 1, walls);
+        }
+    }
+
+    // Copies the position, including the players and the move history, for use by another thread.
+    public Board copy() {
+        return new Board(this);
+    }
+
+    // Takes an immutable copy of the position. It shares the walls with the board until the board changes
+    // them, so it is cheap enough to take after every move; asking twice without a move in between returns
+    // the same snapshot. Like every other method of the board, it must be called by the thread that plays.
+    public Snapshot snapshot() {
+        if ((snapshot != null) && (snapshot.getPly() == getPly()) && (snapshot.getHash() == hash)) {
+            return snapshot;
+        }
+        final int[] walls = new int[players.size()];
+        final String[] names = new String[players.size()];
+        for (int i = 0; i < walls.length; ++i) {
+            walls[i] = players.get(i).getWalls();
+            names[i] = players.get(i).getName();
+        }
+        wallsShared = true;
+        snapshot = new Snapshot(geometry, currentPlayer, playerCells.clone(), walls, names, goals, horizontalWalls,
+            verticalWalls, sides, finished, hash, wallHash, getPly(), (historySize > 0) ? getMove(getPly() - 1) : Move.NONE);
+        return snapshot;
     }
 
     public int getSize() {
@@ -38,20 +184,196 @@ public class Board {
         return getPlayer(currentPlayer);
     }
 
+    public int getCurrentPlayerIndex() {
+        return currentPlayer;
+    }
+
+    public int getPlayerCell(int index) {
+        return playerCells[index];
+    }
+
+    public int cell(int row, int column) {
+        return row * size + column;
+    }
+
+    public int cell(Location location) {
+        return cell(location.row, location.column);
+    }
+
+    public int row(int cell) {
+        return cell / size;
+    }
+
+    public int column(int cell) {
+        return cell % size;
+    }
+
+    public int mirrorCell(int cell) {
+        return cell + size - 1 - 2 * column(cell);
+    }
+
+    public Location location(int cell) {
+        return locations[cell];
+    }
+
+    public boolean isGoal(int player, int cell) {
+        return Bits.get(goals[player], cell);
+    }
+
+    public PathFinder getPaths() {
+        return paths;
+    }
+
+    public Geometry getGeometry() {
+        return geometry;
+    }
+
+    public WallImpact getWallImpact() {
+        return impact;
+    }
+
+    public MoveGenerator getMoves() {
+        return moves;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    // A hash of the walls alone, which only changes when a wall is placed or taken back.
+    public long getWallHash() {
+        return wallHash;
+    }
+
+    long computeHash() {
+        return computeHash(false);
+    }
+
+    // Hashes the position as it would be after mirroring the board in its vertical axis.
+    public long computeMirrorHash() {
+        return computeHash(true);
+    }
+
+    private long computeHash(boolean mirrored) {
+        long result = zobrist.players[currentPlayer];
+        for (int i = 0; i < players.size(); ++i) {
+            final int cell = mirrored ? mirrorCell(playerCells[i]) : playerCells[i];
+            result ^= zobrist.pawns[i][cell] ^ zobrist.walls[i][players.get(i).getWalls()];
+        }
+        for (int slot = 0; slot < getWallSlotCount(); ++slot) {
+            final int key = mirrored ? mirrorSlot(slot) : slot;
+            if (hasHorizontalWall(slot)) {
+                result ^= zobrist.horizontalWalls[key];
+            }
+            if (hasVerticalWall(slot)) {
+                result ^= zobrist.verticalWalls[key];
+            }
+        }
+        return result;
+    }
+
     public boolean hasPlayer(Location location) {
-        return players.stream().anyMatch(p -> p.getLocation().equals(location));
+        return location.isValid(size) && hasPlayer(cell(location));
+    }
+
+    public boolean hasPlayer(int cell) {
+        for (int playerCell : playerCells) {
+            if (playerCell == cell) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public void movePlayer(Location location) {
+        if (location.isValid(size)) {
+            movePlayer(cell(location));
+        }
+    }
+
+    public void movePlayer(int cell) {
         if (!finished) {
-            getCurrentPlayer().changeLocation(location);
-            if (!getCurrentPlayer().hasWon()) {
-                nextPlayer();
-            }
-            else {
-                endGame();
-            }
+            makeMove(Move.pawn(cell));
+        }
+    }
+
+    // Plays a move without checking that it is legal, remembering enough to take it back with unmakeMove.
+    public void makeMove(int move) {
+        if (historySize == history.length) {
+            history = Arrays.copyOf(history, 2 * history.length);
+            hashHistory = Arrays.copyOf(hashHistory, history.length / 2);
         }
+        hashHistory[historySize / 2] = hash;
+        history[historySize++] = move;
+        history[historySize++] = playerCells[currentPlayer] | (currentPlayer << 16) | ((finished ? 1 : 0) << 24);
+
+        final int index = Move.index(move);
+        switch (Move.type(move)) {
+            case Move.PAWN:
+                hash ^= zobrist.pawns[currentPlayer][playerCells[currentPlayer]] ^ zobrist.pawns[currentPlayer][index];
+                playerCells[currentPlayer] = index;
+                getCurrentPlayer().changeLocation(locations[index]);
+                impact.pawnMoved(currentPlayer);
+                if (isGoal(currentPlayer, index)) {
+                    endGame();
+                    return;
+                }
+                break;
+            case Move.HORIZONTAL_WALL:
+                setHorizontalWall(index);
+                removeWall();
+                break;
+            default:
+                setVerticalWall(index);
+                removeWall();
+                break;
+        }
+        nextPlayer();
+    }
+
+    private void removeWall() {
+        final long[] keys = zobrist.walls[currentPlayer];
+        hash ^= keys[getCurrentPlayer().getWalls()];
+        getCurrentPlayer().removeWall();
+        hash ^= keys[getCurrentPlayer().getWalls()];
+    }
+
+    public void unmakeMove() {
+        final int state = history[--historySize];
+        final int move = history[--historySize];
+        currentPlayer = (state >>> 16) & 0xFF;
+        finished = (state >>> 24) != 0;
+
+        final int index = Move.index(move);
+        switch (Move.type(move)) {
+            case Move.PAWN:
+                final int cell = state & 0xFFFF;
+                playerCells[currentPlayer] = cell;
+                getCurrentPlayer().changeLocation(locations[cell]);
+                impact.pawnMoved(currentPlayer);
+                break;
+            case Move.HORIZONTAL_WALL:
+                clearHorizontalWall(index);
+                getCurrentPlayer().addWall();
+                break;
+            default:
+                clearVerticalWall(index);
+                getCurrentPlayer().addWall();
+                break;
+        }
+        hash = hashHistory[historySize / 2];
+    }
+
+    public int getPly() {
+        return historySize / 2;
+    }
+
+    public int getMove(int ply) {
+        return history[2 * ply];
     }
 
     private void endGame() {
@@ -59,82 +381,227 @@ public class Board {
     }
 
     public boolean hasWall(Location location, Direction side) {
-        final Location wallLocation = location.wall(side);
+        return hasWall(location.row, location.column, side);
+    }
+
+    public boolean hasWall(int row, int column, Direction side) {
+        final int wallRow = row + (side.rowDelta - 1) / 2;
+        final int wallColumn = column + (side.columnDelta - 1) / 2;
 
         if (side.isHorizontal) {
-            final Location secondLocation = wallLocation.go(Direction.UP);
-            return (isValidWall(wallLocation) && verticalWalls[wallLocation.row][wallLocation.column]) ||
-                (isValidWall(secondLocation) && verticalWalls[secondLocation.row][secondLocation.column]);
+            return hasVerticalWall(wallRow, wallColumn) || hasVerticalWall(wallRow - 1, wallColumn);
         } else {
-            final Location secondLocation = wallLocation.go(Direction.LEFT);
-            return (isValidWall(wallLocation) && horizontalWalls[wallLocation.row][wallLocation.column]) ||
-                (isValidWall(secondLocation) && horizontalWalls[secondLocation.row][secondLocation.column]);
+            return hasHorizontalWall(wallRow, wallColumn) || hasHorizontalWall(wallRow, wallColumn - 1);
         }
     }
 
+    public boolean hasWall(int cell, Direction side) {
+        return (sides[cell] & side.bit()) != 0;
+    }
+
+    public boolean canMove(int cell, Direction direction) {
+        return (sides[cell] & (direction.bit() | direction.bit() << EDGE_SHIFT)) == 0;
+    }
+
+    public int neighbor(int cell, Direction direction) {
+        return geometry.neighbor(cell, direction);
+    }
+
     public void addWall(Location location, Direction side, Direction direction) {
         final Location wallLocation = location.wall(side).wall(direction);
-        if (isValidWall(wallLocation)) {
-            final boolean[][] walls = (side.isHorizontal) ? verticalWalls : horizontalWalls;
-            walls[wallLocation.row][wallLocation.column] = true;
+        if (isValidWall(wallLocation.row, wallLocation.column)) {
+            final int slot = wallSlot(wallLocation.row, wallLocation.column);
+            if (side.isHorizontal) {
+                setVerticalWall(slot);
+            } else {
+                setHorizontalWall(slot);
+            }
             nextPlayer();
         }
     }
 
+    public int getWallSlotCount() {
+        return wallSize * wallSize;
+    }
+
+    public int wallSlot(int row, int column) {
+        return row * wallSize + column;
+    }
+
+    public int mirrorSlot(int slot) {
+        return slot + wallSize - 1 - 2 * wallColumn(slot);
+    }
+
+    public int wallRow(int slot) {
+        return slot / wallSize;
+    }
+
+    public int wallColumn(int slot) {
+        return slot % wallSize;
+    }
+
+    public boolean isValidWall(int row, int column) {
+        return (row >= 0) && (row < wallSize) && (column >= 0) && (column < wallSize);
+    }
+
     public boolean hasHorizontalWall(Location location) {
-        return isValidWall(location) && horizontalWalls[location.row][location.column];
+        return hasHorizontalWall(location.row, location.column);
+    }
+
+    public boolean hasHorizontalWall(int row, int column) {
+        return isValidWall(row, column) && hasHorizontalWall(wallSlot(row, column));
+    }
+
+    public boolean hasHorizontalWall(int slot) {
+        return Bits.get(horizontalWalls, slot);
     }
 
     public void addHorizontalWall(Location location) {
+        if (isValidWall(location.row, location.column)) {
+            addHorizontalWall(wallSlot(location.row, location.column));
+        }
+    }
 
-        if (isValidWall(location) && (!finished)) {
-            horizontalWalls[location.row][location.column] = true;
-            getCurrentPlayer().removeWall();
-            nextPlayer();
+    public void addHorizontalWall(int slot) {
+        if (moves.isLegalHorizontalWall(slot)) {
+            makeMove(Move.horizontalWall(slot));
         }
     }
 
     public boolean hasVerticalWall(Location location) {
-        return isValidWall(location) && verticalWalls[location.row][location.column];
+        return hasVerticalWall(location.row, location.column);
+    }
+
+    public boolean hasVerticalWall(int row, int column) {
+        return isValidWall(row, column) && hasVerticalWall(wallSlot(row, column));
+    }
+
+    public boolean hasVerticalWall(int slot) {
+        return Bits.get(verticalWalls, slot);
     }
 
     public void addVerticalWall(Location location) {
-        if (isValidWall(location) && (!finished)) {
-            verticalWalls[location.row][location.column] = true;
-            getCurrentPlayer().removeWall();
-            nextPlayer();
+        if (isValidWall(location.row, location.column)) {
+            addVerticalWall(wallSlot(location.row, location.column));
         }
     }
 
-    private boolean isValidWall(Location location) {
-        return location.isValid(horizontalWalls.length, verticalWalls.length);
+    public void addVerticalWall(int slot) {
+        if (moves.isLegalVerticalWall(slot)) {
+            makeMove(Move.verticalWall(slot));
+        }
     }
 
-    private void nextPlayer() {
-        currentPlayer = (currentPlayer + 1) % players.size();
+    // Tells whether a wall fits between the walls already on the board, without looking at the paths.
+    boolean fits(int wall) {
+        return geometry.fits(WallImpact.bit(wall), horizontalWalls, verticalWalls);
     }
 
-    public Set<Location> getReachableLocations(Location location) {
-        Set<Location> result = new HashSet<>();
-        result.add(location);
-        for (Direction direction : Direction.values()) {
-            extend(result, location, direction);
+    // Marks the slots where a horizontal and where a vertical wall fits, without looking at the paths.
+    void fitting(long[] horizontalFree, long[] verticalFree) {
+        geometry.fitting(horizontalWalls, verticalWalls, horizontalFree, verticalFree);
+    }
+
+    // Puts a wall on the board without taking it from a player or passing the turn.
+    void placeWall(int move) {
+        if (Move.type(move) == Move.HORIZONTAL_WALL) {
+            setHorizontalWall(Move.index(move));
+        } else {
+            setVerticalWall(Move.index(move));
         }
-        return result;
     }
 
-    private void extend(Set<Location> result, Location location, Direction direction) {
-        if (!hasWall(location, direction)) {
-            Location next = location.go(direction);
-            if (next.isValid(size) && (!result.contains(next))) {
-                result.add(next);
-                for (Direction d : Direction.values()) {
-                    extend(result, next, d);
-                }
-            }
+    private void setHorizontalWall(int slot) {
+        ownWalls();
+        Bits.set(horizontalWalls, slot);
+        hash ^= zobrist.horizontalWalls[slot];
+        wallHash ^= zobrist.horizontalWalls[slot];
+        final int wall = 2 * slot;
+        sides[geometry.wallCell(wall, 0)] |= Direction.DOWN.bit();
+        sides[geometry.wallCell(wall, 1)] |= Direction.UP.bit();
+        sides[geometry.wallCell(wall, 2)] |= Direction.DOWN.bit();
+        sides[geometry.wallCell(wall, 3)] |= Direction.UP.bit();
+        wallAdded(Move.horizontalWall(slot), wall);
+    }
+
+    private void setVerticalWall(int slot) {
+        ownWalls();
+        Bits.set(verticalWalls, slot);
+        hash ^= zobrist.verticalWalls[slot];
+        wallHash ^= zobrist.verticalWalls[slot];
+        final int wall = 2 * slot + 1;
+        sides[geometry.wallCell(wall, 0)] |= Direction.RIGHT.bit();
+        sides[geometry.wallCell(wall, 1)] |= Direction.LEFT.bit();
+        sides[geometry.wallCell(wall, 2)] |= Direction.RIGHT.bit();
+        sides[geometry.wallCell(wall, 3)] |= Direction.LEFT.bit();
+        wallAdded(Move.verticalWall(slot), wall);
+    }
+
+    private void clearHorizontalWall(int slot) {
+        ownWalls();
+        Bits.clear(horizontalWalls, slot);
+        wallHash ^= zobrist.horizontalWalls[slot];
+        wallRemoved(Move.horizontalWall(slot), 2 * slot);
+    }
+
+    private void clearVerticalWall(int slot) {
+        ownWalls();
+        Bits.clear(verticalWalls, slot);
+        wallHash ^= zobrist.verticalWalls[slot];
+        wallRemoved(Move.verticalWall(slot), 2 * slot + 1);
+    }
+
+    private void wallAdded(int move, int wall) {
+        paths.wallAdded(geometry.wallCell(wall, 0), geometry.wallCell(wall, 1), geometry.wallCell(wall, 2), geometry.wallCell(wall, 3));
+        impact.wallAdded(move);
+    }
+
+    private void wallRemoved(int move, int wall) {
+        for (int i = 0; i < 4; ++i) {
+            updateSides(geometry.wallCell(wall, i));
         }
+        paths.wallRemoved(geometry.wallCell(wall, 0), geometry.wallCell(wall, 1), geometry.wallCell(wall, 2), geometry.wallCell(wall, 3));
+        impact.wallRemoved(move);
     }
 
-}
+    // Copies the walls before they change when a snapshot still shares them.
+    private void ownWalls() {
+        if (wallsShared) {
+            horizontalWalls = horizontalWalls.clone();
+            verticalWalls = verticalWalls.clone();
+            sides = sides.clone();
+            wallsShared = false;
+        }
+    }
+
+    private void updateSides(int cell) {
+        int bits = sides[cell] & (0xF << EDGE_SHIFT);
+        for (Direction direction : Direction.VALUES) {
+            if (hasWall(row(cell), column(cell), direction)) {
+                bits |= direction.bit();
+            }
+        }
+        sides[cell] = (byte) bits;
+    }
 
+    private void nextPlayer() {
+        hash ^= zobrist.players[currentPlayer];
+        currentPlayer = (currentPlayer + 1) % players.size();
+        hash ^= zobrist.players[currentPlayer];
+    }
 
+    public Set<Location> getReachableLocations(Location location) {
+        if (!location.isValid(size)) {
+            final Set<Location> result = new HashSet<>();
+            result.add(location);
+            return result;
+        }
+        final long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        final long[] reachable = new long[Bits.words(size * size)];
+        paths.fillReachable(cell(location), reachable);
+        if (Metrics.ENABLED) {
+            Metrics.REACHABLE_TIME.record(System.nanoTime() - start);
+        }
+        return new LocationSet(size, reachable);
+    }
+}
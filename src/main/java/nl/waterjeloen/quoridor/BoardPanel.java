@@ -2,26 +2,53 @@ package nl.waterjeloen.quoridor;
 
 import javax.swing.JComponent;
 import java.awt.Color;
+import java.awt.EventQueue;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Rectangle;
+import java.awt.Transparency;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
+// Paints the board in two layers. The cells and walls are drawn once into an image that is only redrawn
+// when a wall is placed or the panel is resized; the current cell, reachable goals, highlights and pawns
+// are painted over it on every frame. Highlight changes are collected into one dirty region and repainted
+// together once the current event has been handled. It paints the snapshot it was last shown rather than
+// the board itself, so the board may play on in another thread while a frame is painted.
 public class BoardPanel extends JComponent {
-    private static final Color[] PLAYER_COLORS = { Color.RED, Color.BLUE };
+    private static final Color[] PLAYER_COLORS = { Color.RED, Color.BLUE, Color.YELLOW, Color.MAGENTA };
 
     private final Board board;
     private final List<BoardListener> listeners;
     private final List<Rectangle> highlights;
+    private final long[] reachable;
+    private volatile Snapshot snapshot;
+
+    private Rectangle cell;
+    private int layoutWidth;
+    private int layoutHeight;
+    private BufferedImage layer;
+    private long layerWalls;
+    private long reachableHash;
+    private boolean reachableValid;
+    private Rectangle dirty;
+    private boolean repaintPending;
+
+    private volatile long frames;
+    private volatile long frameNanos;
+    private volatile long lastFrameNanos;
+    private volatile long maxFrameNanos;
 
     public BoardPanel(Board board) {
         this.board = board;
         this.listeners = new ArrayList<>();
         this.highlights = new ArrayList<>();
+        this.reachable = new long[Bits.words(board.getSize() * board.getSize())];
+        this.snapshot = board.snapshot();
 
         addMouseListener(new MouseAdapter() {
             @Override
@@ -37,7 +64,7 @@ public class BoardPanel extends JComponent {
 
                 final int cellX = (x - cell.x) / cell.width;
                 final int cellY = (y - cell.y) / cell.height;
-                final Location location = new Location(cellY / 7, cellX / 7);
+                final Location location = Location.of(cellY / 7, cellX / 7);
 
                 final boolean isHorizontalWall = cellY % 7 == 6;
                 final boolean isVerticalWall = cellX % 7 == 6;
@@ -56,112 +83,203 @@ public class BoardPanel extends JComponent {
         });
     }
 
+    // Shows a new position; it may be called from any thread.
+    public void show(Snapshot snapshot) {
+        this.snapshot = snapshot;
+        repaint();
+    }
+
     public void addListener(BoardListener listener) {
         listeners.add(listener);
     }
 
     public void highlightField(Location location) {
         if (location.isValid(board.getSize())) {
-            highlights.add(new Rectangle(location.column * 7, location.row * 7, 6, 6));
-            repaint();
+            highlight(new Rectangle(location.column * 7, location.row * 7, 6, 6));
         }
     }
 
     public void highlightCenter(Location location) {
         if (location.isValid(board.getSize() - 1)) {
-            highlights.add(new Rectangle(location.column * 7 + 6, location.row * 7 + 6, 1, 1));
-            repaint();
+            highlight(new Rectangle(location.column * 7 + 6, location.row * 7 + 6, 1, 1));
         }
     }
 
     public void highlightHorizontalWall(Location location) {
         if (location.isValid(board.getSize() - 1, board.getSize())) {
-            highlights.add(new Rectangle(location.column * 7, location.row * 7 + 6, 6, 1));
-            repaint();
+            highlight(new Rectangle(location.column * 7, location.row * 7 + 6, 6, 1));
         }
     }
 
     public void highlightVerticalWall(Location location) {
         if (location.isValid(board.getSize(), board.getSize() - 1)) {
-            highlights.add(new Rectangle(location.column * 7 + 6, location.row * 7, 1, 6));
-            repaint();
+            highlight(new Rectangle(location.column * 7 + 6, location.row * 7, 1, 6));
         }
     }
 
     public void clearHighlights() {
+        for (Rectangle r : highlights) {
+            invalidate(r);
+        }
         highlights.clear();
-        repaint();
+    }
+
+    public long getFrameCount() {
+        return frames;
+    }
+
+    public long getLastFrameNanos() {
+        return lastFrameNanos;
+    }
+
+    public long getAverageFrameNanos() {
+        return (frames == 0) ? 0 : frameNanos / frames;
+    }
+
+    public long getMaxFrameNanos() {
+        return maxFrameNanos;
+    }
+
+    public void resetFrameTimes() {
+        frames = 0;
+        frameNanos = 0;
+        lastFrameNanos = 0;
+        maxFrameNanos = 0;
     }
 
     @Override
     public void paintComponent(Graphics graphics) {
+        final long start = System.nanoTime();
         final Graphics2D g = (Graphics2D) graphics;
-
         final Rectangle cell = calculateCell();
+        final Snapshot position = snapshot;
 
-        final Set<Location> reachable = board.getReachableLocations(board.getCurrentPlayer().getLocation());
-        for (int r = 0; r < board.getSize(); ++r) {
-            for (int c = 0; c < board.getSize(); ++c) {
-                final Location location = new Location(r, c);
-                final Color color = (location.equals(board.getCurrentPlayer().getLocation())) ? Color.GRAY.darker()
-                        : (board.getCurrentPlayer().winsAt(location) && reachable.contains(location)) ? Color.GRAY.darker()
-                        : Color.BLACK;
-                g.setColor(color);
-                g.fillRect(
-                    cell.x + cell.width * c * 7,
-                    cell.y + cell.height * r * 7,
-                    cell.width * 6,
-                    cell.height * 6);
-            }
+        if ((layer == null) || (layerWalls != position.getWallHash())) {
+            paintLayer(cell, position);
         }
+        g.drawImage(layer, cell.x, cell.y, null);
 
-        g.setColor(Color.ORANGE);
-        for (int r = 0; r < board.getSize() - 1; ++r) {
-            for (int c = 0; c < board.getSize() - 1; ++c) {
-                final Location location = new Location(r, c);
-                if (board.hasHorizontalWall(location)) {
-                    g.fillRect(
-                        cell.x + cell.width * c * 7,
-                        cell.y + cell.height * (r * 7 + 6),
-                        cell.width * 13,
-                        cell.height);
-                }
-                if (board.hasVerticalWall(location)) {
-                    g.fillRect(
-                        cell.x + cell.width * (c * 7 + 6),
-                        cell.y + cell.height * r * 7,
-                        cell.width,
-                        cell.height * 13);
-                }
+        final int currentPlayer = position.getCurrentPlayerIndex();
+        final int currentCell = position.getPlayerCell(currentPlayer);
+        if (!reachableValid || (reachableHash != position.getHash())) {
+            position.fillReachable(currentCell, reachable);
+            reachableHash = position.getHash();
+            reachableValid = true;
+        }
+        g.setColor(Color.GRAY.darker());
+        for (int index = 0; index < position.getSize() * position.getSize(); ++index) {
+            if ((index == currentCell) || (position.isGoal(currentPlayer, index) && Bits.get(reachable, index))) {
+                fill(g, cell, position.column(index) * 7, position.row(index) * 7, 6, 6);
             }
         }
+
         g.setColor(Color.GREEN);
         for (Rectangle r : highlights) {
-            g.fillRect(
-                cell.x + cell.width * r.x,
-                cell.y + cell.height * r.y,
-                cell.width * r.width,
-                cell.height * r.height);
-        }
-        for (int i = 0; i < board.getPlayerCount(); ++i) {
-            final Player player = board.getPlayer(i);
+            fill(g, cell, r.x, r.y, r.width, r.height);
+        }
+        for (int i = 0; i < position.getPlayerCount(); ++i) {
+            final Location location = position.getPlayerLocation(i);
+            final int x = cell.x + cell.width * (location.column * 7 + 1);
+            final int y = cell.y + cell.height * (location.row * 7 + 1);
             g.setColor(PLAYER_COLORS[i]);
-            g.fillOval(
-            cell.x + cell.width * (player.getLocation().column * 7 + 1),
-            cell.y + cell.height * (player.getLocation().row * 7 + 1),
-            cell.width * 4,
-            cell.height * 4);
+            g.fillOval(x, y, cell.width * 4, cell.height * 4);
             g.setColor(Color.WHITE);
-            g.drawString(Integer.toString(player.getWalls()), cell.x + cell.width * (player.getLocation().column * 7 + 1), cell.y + cell.height * (player.getLocation().row * 7 + 1));
+            g.drawString(Integer.toString(position.getWalls(i)), x, y);
+        }
+
+        final long nanos = System.nanoTime() - start;
+        frames = frames + 1;
+        frameNanos = frameNanos + nanos;
+        lastFrameNanos = nanos;
+        maxFrameNanos = Math.max(maxFrameNanos, nanos);
+        if (Metrics.ENABLED) {
+            Metrics.PAINT_TIME.record(nanos);
+        }
+    }
+
+    private void paintLayer(Rectangle cell, Snapshot position) {
+        final int width = Math.max(1, cell.width * (position.getSize() * 7 - 1));
+        final int height = Math.max(1, cell.height * (position.getSize() * 7 - 1));
+        if ((layer == null) || (layer.getWidth() != width) || (layer.getHeight() != height)) {
+            final GraphicsConfiguration configuration = getGraphicsConfiguration();
+            layer = (configuration != null) ? configuration.createCompatibleImage(width, height, Transparency.OPAQUE)
+                : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+
+        final Graphics2D g = layer.createGraphics();
+        try {
+            g.translate(-cell.x, -cell.y);
+            g.setColor((getBackground() != null) ? getBackground() : Color.LIGHT_GRAY);
+            g.fillRect(cell.x, cell.y, width, height);
+            g.setColor(Color.BLACK);
+            for (int r = 0; r < position.getSize(); ++r) {
+                for (int c = 0; c < position.getSize(); ++c) {
+                    fill(g, cell, c * 7, r * 7, 6, 6);
+                }
+            }
+
+            g.setColor(Color.ORANGE);
+            for (int slot = 0; slot < position.getWallSlotCount(); ++slot) {
+                final int r = position.wallRow(slot);
+                final int c = position.wallColumn(slot);
+                if (position.hasHorizontalWall(slot)) {
+                    fill(g, cell, c * 7, r * 7 + 6, 13, 1);
+                }
+                if (position.hasVerticalWall(slot)) {
+                    fill(g, cell, c * 7 + 6, r * 7, 1, 13);
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+        layerWalls = position.getWallHash();
+    }
+
+    private static void fill(Graphics2D g, Rectangle cell, int x, int y, int width, int height) {
+        g.fillRect(cell.x + cell.width * x, cell.y + cell.height * y, cell.width * width, cell.height * height);
+    }
+
+    private void highlight(Rectangle r) {
+        highlights.add(r);
+        invalidate(r);
+    }
+
+    // Adds a rectangle in board units to the dirty region, and makes sure the region is repainted once.
+    private void invalidate(Rectangle r) {
+        final Rectangle cell = calculateCell();
+        final Rectangle pixels = new Rectangle(
+            cell.x + cell.width * r.x,
+            cell.y + cell.height * r.y,
+            cell.width * r.width,
+            cell.height * r.height);
+        dirty = (dirty == null) ? pixels : dirty.union(pixels);
+        if (!repaintPending) {
+            repaintPending = true;
+            EventQueue.invokeLater(this::repaintDirty);
+        }
+    }
+
+    private void repaintDirty() {
+        repaintPending = false;
+        if (dirty != null) {
+            repaint(dirty);
+            dirty = null;
         }
     }
 
     private Rectangle calculateCell() {
+        if ((cell != null) && (layoutWidth == getWidth()) && (layoutHeight == getHeight())) {
+            return cell;
+        }
         final int cellWidth = getWidth() / (board.getSize() * 7 - 1);
         final int cellHeight = getHeight() / (board.getSize() * 7 - 1);
         final int cellSize =  Math.min(cellWidth, cellHeight);
         final int xOffset = (getWidth() - cellSize * (board.getSize() * 7 - 1)) / 2;
         final int yOffset = (getHeight() - cellSize * (board.getSize() * 7 - 1)) / 2;
-        return new Rectangle(xOffset, yOffset, cellSize, cellSize);
+        this.cell = new Rectangle(xOffset, yOffset, cellSize, cellSize);
+        this.layoutWidth = getWidth();
+        this.layoutHeight = getHeight();
+        this.layer = null;
+        return cell;
     }
 }
@@ -6,6 +6,10 @@ public enum Direction {
     LEFT("left", 0, -1, true, false),
     RIGHT("right", 0, 1, true, false);
 
+    static final Direction[] VALUES = values();
+    private static final Direction[] HORIZONTAL = { LEFT, RIGHT };
+    private static final Direction[] VERTICAL = { UP, DOWN };
+
     final String name;
     final int rowDelta;
     final int columnDelta;
@@ -20,6 +24,14 @@ public enum Direction {
         this.isVertical = isVertical;
     }
 
+    Direction[] perpendicular() {
+        return isVertical ? HORIZONTAL : VERTICAL;
+    }
+
+    int bit() {
+        return 1 << ordinal();
+    }
+
     @Override
     public String toString() {
         return name;
@@ -0,0 +1,325 @@
+package nl.waterjeloen.quoridor;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Solves positions in which at most a few walls are left, exactly. A table holds the outcome of every
+// placement of both pawns, with either player to move, for one set of walls on the board and walls left
+// in hand. It is filled by retrograde analysis: starting from the won positions it walks back through
+// the pawn moves, in order of the number of plies to the end, so every win is the fastest and every loss
+// the slowest possible. A wall in hand leads to a smaller table with that wall on the board, which is
+// solved first; a position where nobody can force a win is a draw.
+public class Endgame {
+    private static final int MAX_TABLES = 4096;
+
+    private final int maxWalls;
+    private final Map<Long, Table> tables;
+    private long solved;
+
+    public Endgame(int maxWalls) {
+        this.maxWalls = maxWalls;
+        this.tables = new HashMap<>();
+    }
+
+    public boolean canSolve(Board board) {
+        return (board.getPlayerCount() == 2) && !board.isFinished()
+            && (board.getPlayer(0).getWalls() + board.getPlayer(1).getWalls() <= maxWalls);
+    }
+
+    // Returns the perfect move with its score in the terms of AlphaBeta, or null when the position has too
+    // many walls left.
+    public synchronized SearchResult solve(Board board) {
+        if (!canSolve(board)) {
+            return null;
+        }
+        final long start = System.nanoTime();
+        final long before = solved;
+        final Table table = table(board, board.getPlayer(0).getWalls(), board.getPlayer(1).getWalls());
+        final int player = board.getCurrentPlayerIndex();
+        final int state = table.state(board.getPlayerCell(player), board.getPlayerCell(1 - player), player);
+        final int value = table.values[state];
+        final int score = (value > 0) ? AlphaBeta.WIN - (value - 1) : (value < 0) ? -AlphaBeta.WIN + (-value - 1) : 0;
+        return new SearchResult(table.bestMove(state), score, Math.max(0, Math.abs(value) - 1), solved - before,
+            System.nanoTime() - start);
+    }
+
+    // Plays solved positions perfectly, and leaves the rest to the engine.
+    public Strategy with(Strategy engine) {
+        return new Strategy() {
+            @Override
+            public int selectMove(Board board) {
+                final SearchResult result = solve(board);
+                return ((result != null) && (result.getMove() != Move.NONE)) ? result.getMove() : engine.selectMove(board);
+            }
+
+            @Override
+            public void shutdown() {
+                engine.shutdown();
+            }
+        };
+    }
+
+    private Table table(Board board, int firstWalls, int secondWalls) {
+        final long key = board.getWallHash() ^ (firstWalls * 0x9E3779B97F4A7C15L) ^ (secondWalls * 0xC2B2AE3D27D4EB4FL);
+        Table table = tables.get(key);
+        if (table == null) {
+            if (tables.size() >= MAX_TABLES) {
+                tables.clear();
+            }
+            table = new Table(board.copy(), firstWalls, secondWalls);
+            tables.put(key, table);
+        }
+        return table;
+    }
+
+    private class Table {
+        private final Board board;
+        private final int cells;
+        private final int[] walls;
+        private final int[][] wallMoves;
+        private final Table[][] children;
+        private final int[] values;
+        private final int[] buffer;
+
+        private Table(Board board, int firstWalls, int secondWalls) {
+            this.board = board;
+            this.cells = board.getSize() * board.getSize();
+            this.walls = new int[] { firstWalls, secondWalls };
+            this.wallMoves = new int[2][];
+            this.children = new Table[2][];
+            this.values = new int[2 * cells * cells];
+            this.buffer = new int[board.getMoves().getMaxMoves()];
+
+            for (int player = 0; player < 2; ++player) {
+                final int count = (walls[player] > 0) ? fittingWalls() : 0;
+                wallMoves[player] = Arrays.copyOf(buffer, count);
+                children[player] = new Table[count];
+                for (int i = 0; i < count; ++i) {
+                    final Board child = board.copy();
+                    child.placeWall(wallMoves[player][i]);
+                    children[player][i] = table(child, firstWalls - ((player == 0) ? 1 : 0),
+                        secondWalls - ((player == 1) ? 1 : 0));
+                }
+            }
+            solve();
+        }
+
+        // The state of a position is the cell of the player to move, the cell of the other, and who moves.
+        private int state(int mover, int other, int player) {
+            return (player * cells + mover) * cells + other;
+        }
+
+        private int fittingWalls() {
+            int count = 0;
+            for (int slot = 0; slot < board.getWallSlotCount(); ++slot) {
+                if (board.getMoves().fits(Move.horizontalWall(slot))) {
+                    buffer[count++] = Move.horizontalWall(slot);
+                }
+                if (board.getMoves().fits(Move.verticalWall(slot))) {
+                    buffer[count++] = Move.verticalWall(slot);
+                }
+            }
+            return count;
+        }
+
+        private boolean isLegalWall(int player, int index, int mover, int other) {
+            final PathFinder paths = children[player][index].board.getPaths();
+            return (paths.distanceToGoal(player, mover) != PathFinder.UNREACHABLE)
+                && (paths.distanceToGoal(1 - player, other) != PathFinder.UNREACHABLE);
+        }
+
+        // Values are the number of plies to the end plus one, positive when the player to move wins,
+        // negative when it loses, and zero for a draw.
+        private void solve() {
+            final int states = values.length;
+            final int[] remaining = new int[states];
+            final int[] slowest = new int[states];
+            final boolean[] drawn = new boolean[states];
+            final boolean[] winning = new boolean[states];
+            final boolean[] done = new boolean[states];
+            final int[] edges = new int[states + 1];
+            final Queue queue = new Queue(states);
+
+            // Count the pawn moves into every state first, to store the moves out of it backwards.
+            for (int s = 0; s < states; ++s) {
+                if (isPlayable(s)) {
+                    final int count = pawnMoves(s);
+                    for (int i = 0; i < count; ++i) {
+                        ++edges[next(s, buffer[i]) + 1];
+                    }
+                }
+            }
+            for (int s = 0; s < states; ++s) {
+                edges[s + 1] += edges[s];
+            }
+            final int[] predecessors = new int[edges[states]];
+            final int[] fill = Arrays.copyOf(edges, states);
+
+            for (int s = 0; s < states; ++s) {
+                final int player = s / (cells * cells);
+                final int mover = (s / cells) % cells;
+                final int other = s % cells;
+                if (mover == other) {
+                    done[s] = true;
+                    continue;
+                }
+                if (board.isGoal(1 - player, other)) {
+                    queue.push(0, s);
+                    continue;
+                }
+                if (board.isGoal(player, mover)) {
+                    done[s] = true;
+                    continue;
+                }
+
+                final int count = pawnMoves(s);
+                for (int i = 0; i < count; ++i) {
+                    predecessors[fill[next(s, buffer[i])]++] = s;
+                }
+                remaining[s] = count;
+                int wins = 0;
+                for (int i = 0; i < wallMoves[player].length; ++i) {
+                    if (isLegalWall(player, i, mover, other)) {
+                        final int value = children[player][i].values[state(other, mover, 1 - player)];
+                        if (value < 0) {
+                            winning[s] = true;
+                            queue.push(-value, s);
+                        } else if (value > 0) {
+                            slowest[s] = Math.max(slowest[s], value);
+                            ++wins;
+                        } else {
+                            drawn[s] = true;
+                        }
+                    }
+                }
+                if ((count == 0) && (wins > 0) && !drawn[s] && !winning[s]) {
+                    queue.push(slowest[s], s);
+                }
+            }
+
+            // Settle the states in order of plies: a state that can move to a lost state is won, a state
+            // that can only move to won states is lost.
+            while (queue.pop()) {
+                final int s = queue.state;
+                final int plies = queue.plies;
+                if (done[s]) {
+                    continue;
+                }
+                done[s] = true;
+                values[s] = winning[s] ? plies + 1 : -(plies + 1);
+                for (int e = edges[s]; e < edges[s + 1]; ++e) {
+                    final int p = predecessors[e];
+                    if (done[p]) {
+                        continue;
+                    }
+                    if (values[s] < 0) {
+                        winning[p] = true;
+                        queue.push(plies + 1, p);
+                    } else {
+                        slowest[p] = Math.max(slowest[p], values[s]);
+                        if ((--remaining[p] == 0) && !drawn[p] && !winning[p]) {
+                            queue.push(slowest[p], p);
+                        }
+                    }
+                }
+            }
+            solved += states;
+        }
+
+        private boolean isPlayable(int s) {
+            final int player = s / (cells * cells);
+            final int mover = (s / cells) % cells;
+            final int other = s % cells;
+            return (mover != other) && !board.isGoal(1 - player, other) && !board.isGoal(player, mover);
+        }
+
+        private int pawnMoves(int s) {
+            return board.getMoves().generatePawnMoves((s / cells) % cells, s % cells, buffer, 0);
+        }
+
+        private int next(int s, int move) {
+            final int player = s / (cells * cells);
+            return state(s % cells, Move.index(move), 1 - player);
+        }
+
+        private int bestMove(int s) {
+            final int player = s / (cells * cells);
+            final int mover = (s / cells) % cells;
+            final int other = s % cells;
+            int best = Move.NONE;
+            int bestValue = Integer.MIN_VALUE;
+            final int count = pawnMoves(s);
+            for (int i = 0; i < count; ++i) {
+                final int rank = rank(values[next(s, buffer[i])]);
+                if (rank > bestValue) {
+                    bestValue = rank;
+                    best = buffer[i];
+                }
+            }
+            for (int i = 0; i < wallMoves[player].length; ++i) {
+                if (isLegalWall(player, i, mover, other)) {
+                    final int rank = rank(children[player][i].values[state(other, mover, 1 - player)]);
+                    if (rank > bestValue) {
+                        bestValue = rank;
+                        best = wallMoves[player][i];
+                    }
+                }
+            }
+            return best;
+        }
+
+        // Orders the moves by what they leave the opponent: a quick loss first, then a draw, then the
+        // slowest win.
+        private int rank(int child) {
+            return (child < 0) ? Integer.MAX_VALUE + child : (child == 0) ? 0 : Integer.MIN_VALUE + child;
+        }
+    }
+
+    // A bucket queue of states by plies, holding a state more than once when it is found again.
+    private static class Queue {
+        private int[] heads;
+        private int[] states;
+        private int[] links;
+        private int size;
+        private int current;
+        private int state;
+        private int plies;
+
+        private Queue(int capacity) {
+            this.heads = new int[64];
+            this.states = new int[capacity];
+            this.links = new int[capacity];
+            Arrays.fill(heads, -1);
+        }
+
+        private void push(int plies, int state) {
+            if (plies >= heads.length) {
+                final int length = heads.length;
+                heads = Arrays.copyOf(heads, Math.max(2 * length, plies + 1));
+                Arrays.fill(heads, length, heads.length, -1);
+            }
+            if (size == states.length) {
+                states = Arrays.copyOf(states, 2 * size);
+                links = Arrays.copyOf(links, 2 * size);
+            }
+            states[size] = state;
+            links[size] = heads[plies];
+            heads[plies] = size++;
+        }
+
+        private boolean pop() {
+            while ((current < heads.length) && (heads[current] < 0)) {
+                ++current;
+            }
+            if (current == heads.length) {
+                return false;
+            }
+            final int entry = heads[current];
+            heads[current] = links[entry];
+            state = states[entry];
+            plies = current;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package nl.waterjeloen.quoridor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+// Searches on a thread of its own, so the thread that asks for a move, like the Swing event thread, can
+// go on. A request answers with a future; cancelling the future stops its search within a thousand nodes.
+// After its move the engine can ponder: it plays the answer it expects and searches the position after it
+// until the opponent moves. When the opponent plays that move, the running search answers as a request
+// once it has had the usual time, counted from when it started pondering, so often right away; otherwise
+// it is dropped, leaving only its table entries.
+// The methods that ask for moves must all be called from the same thread.
+public class Engine implements Strategy {
+    private final AlphaBeta search;
+    private final Strategy shortcut;
+    private final Consumer<SearchResult> progress;
+    private final long budget;
+    private final ExecutorService executor;
+    private Request pondering;
+    private volatile int[] line = new int[0];
+    private volatile Request running;
+
+    // The shortcut is asked first and may answer without a search, like an opening book, by returning a
+    // move other than Move.NONE. The progress gets the best line after every depth, on the engine thread.
+    public Engine(AlphaBeta search, Strategy shortcut, Consumer<SearchResult> progress) {
+        this.search = search;
+        this.shortcut = shortcut;
+        this.progress = progress;
+        this.budget = search.getBudget();
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "engine");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public int selectMove(Board board) {
+        return think(board).join().getMove();
+    }
+
+    // Asks for a move in the position of the board, which may change as soon as this returns.
+    public CompletableFuture<SearchResult> think(Board board) {
+        final Request ponder = pondering;
+        pondering = null;
+        if ((ponder != null) && (ponder.hash == board.getHash()) && (ponder.ply == board.getPly())) {
+            ponder.hit(budget);
+            return ponder.future;
+        }
+        if (ponder != null) {
+            ponder.future.cancel(false);
+        }
+        return submit(new Request(board.copy(), false));
+    }
+
+    // Starts pondering on the position of the board, with the opponent to move, when the last search of
+    // the engine expects a legal move from there. Returns whether it does.
+    public boolean ponder(Board board) {
+        cancel();
+        if (board.isFinished() || (line.length < 2)) {
+            return false;
+        }
+        final Board copy = board.copy();
+        if (!copy.getMoves().isLegal(line[1])) {
+            return false;
+        }
+        copy.makeMove(line[1]);
+        final Request request = new Request(copy, true);
+        pondering = request;
+        submit(request);
+        return true;
+    }
+
+    // Returns the speed of the search that runs now, or of the last one.
+    public long getNodesPerSecond() {
+        final Request request = running;
+        if (request == null) {
+            return 0;
+        }
+        final long nanos = ((request.finished != 0) ? request.finished : System.nanoTime()) - request.started;
+        return (nanos <= 0) ? 0 : request.nodes * 1_000_000_000L / nanos;
+    }
+
+    public boolean isPondering() {
+        return pondering != null;
+    }
+
+    // Stops pondering. A request that was handed out is cancelled through its future.
+    public void cancel() {
+        if (pondering != null) {
+            pondering.future.cancel(false);
+            pondering = null;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    private CompletableFuture<SearchResult> submit(Request request) {
+        executor.execute(request);
+        return request.future;
+    }
+
+    private class Request implements Runnable, SearchListener {
+        private final Board board;
+        private final long hash;
+        private final int ply;
+        private final boolean ponder;
+        private final CompletableFuture<SearchResult> future;
+        private volatile long deadline;
+        private volatile boolean searched;
+        private volatile long started;
+        private volatile long finished;
+        private volatile long nodes;
+
+        private Request(Board board, boolean ponder) {
+            this.board = board;
+            this.hash = board.getHash();
+            this.ply = board.getPly();
+            this.ponder = ponder;
+            this.deadline = Long.MAX_VALUE;
+            this.future = new CompletableFuture<>();
+        }
+
+        // Gives a ponder search that guessed right the time a request would have had, counted from when it
+        // started; when it has pondered that long already, it answers with the last depth it finished.
+        private void hit(long budget) {
+            final long start = started;
+            deadline = ((start != 0) ? start : System.nanoTime()) + budget;
+        }
+
+        @Override
+        public void run() {
+            if (future.isDone()) {
+                return;
+            }
+            started = System.nanoTime();
+            running = this;
+            try {
+                final int move = (shortcut != null) ? shortcut.selectMove(board) : Move.NONE;
+                final SearchResult result = (move != Move.NONE)
+                    ? new SearchResult(move, 0, 0, 0, System.nanoTime() - started)
+                    : search.search(board, !ponder, this);
+                nodes = result.getNodes();
+                finished = System.nanoTime();
+                if (!future.isDone()) {
+                    line = result.getLine();
+                    future.complete(result);
+                }
+            } catch (RuntimeException e) {
+                finished = System.nanoTime();
+                future.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public void searched(SearchResult result) {
+            searched = true;
+            nodes = result.getNodes();
+            if (!future.isDone()) {
+                progress.accept(result);
+            }
+        }
+
+        @Override
+        public boolean stop(long nodes) {
+            this.nodes = nodes;
+            return future.isDone() || (searched && (System.nanoTime() > deadline));
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package nl.waterjeloen.quoridor;
+
+import java.util.Arrays;
+
+// The features of many positions, stored a column per feature so that scoring them is a few plain loops
+// over arrays, which the compiler turns into vector instructions.
+public final class FeatureBatch {
+    private final int[][] columns;
+    private int size;
+
+    public FeatureBatch(int capacity) {
+        this.columns = new int[Features.COUNT][Math.max(1, capacity)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int get(int row, int feature) {
+        return columns[feature][row];
+    }
+
+    // Adds a row with the features in the array from the offset on, and returns its index.
+    public int add(int[] features, int offset) {
+        if (size == columns[0].length) {
+            for (int feature = 0; feature < Features.COUNT; ++feature) {
+                columns[feature] = Arrays.copyOf(columns[feature], 2 * size);
+            }
+        }
+        for (int feature = 0; feature < Features.COUNT; ++feature) {
+            columns[feature][size] = features[offset + feature];
+        }
+        return size++;
+    }
+
+    int[] column(int feature) {
+        return columns[feature];
+    }
+}
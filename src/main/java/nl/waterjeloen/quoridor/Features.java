@@ -0,0 +1,128 @@
+package nl.waterjeloen.quoridor;
+
+// Describes a position by a few numbers for the player to move, each as the difference with the opponent
+// closest to its goal, so a position and the same one seen by the other player have opposite features:
+//
+//   bias      always 1, the worth of being the one to move
+//   path      how much longer the shortest path of the opponent is
+//   walls     how many more walls the player has left
+//   detour    how much longer the best path of the opponent is when it cannot take its best first step
+//   mobility  how many more moves the pawn of the player has
+//   goal      how much further the opponent is from its goal on an empty board
+//
+// An extractor belongs to one board and writes into arrays it is given, so it does not allocate.
+public final class Features {
+    public static final int BIAS = 0;
+    public static final int PATH = 1;
+    public static final int WALLS = 2;
+    public static final int DETOUR = 3;
+    public static final int MOBILITY = 4;
+    public static final int GOAL = 5;
+    public static final int COUNT = 6;
+
+    private static final String[] NAMES = { "bias", "path", "walls", "detour", "mobility", "goal" };
+
+    private final Board board;
+    private final int[][] openDistances;
+    private final int[] moves;
+    private final int[] row;
+
+    public Features(Board board) {
+        this.board = board;
+        this.openDistances = new int[board.getPlayerCount()][];
+        for (int player = 0; player < openDistances.length; ++player) {
+            openDistances[player] = openDistances(board, player);
+        }
+        this.moves = new int[4 * board.getPlayerCount()];
+        this.row = new int[COUNT];
+    }
+
+    public static String name(int feature) {
+        return NAMES[feature];
+    }
+
+    // Returns the feature with the name, or -1 when there is none.
+    public static int feature(String name) {
+        for (int i = 0; i < COUNT; ++i) {
+            if (NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public Board getBoard() {
+        return board;
+    }
+
+    // Writes the features of the position on the board into the array from the offset on.
+    public void extract(int[] features, int offset) {
+        final PathFinder paths = board.getPaths();
+        final int me = board.getCurrentPlayerIndex();
+        final int opponent = AlphaBeta.closestOpponent(board, me);
+        final int myCell = board.getPlayerCell(me);
+        final int opponentCell = board.getPlayerCell(opponent);
+        final int myMoves = board.getMoves().generatePawnMoves(myCell, -1, moves, 0);
+        final int myDetour = detour(me, myMoves);
+        final int opponentMoves = board.getMoves().generatePawnMoves(opponentCell, -1, moves, 0);
+        final int opponentDetour = detour(opponent, opponentMoves);
+        features[offset + BIAS] = 1;
+        features[offset + PATH] = paths.distanceToGoal(opponent) - paths.distanceToGoal(me);
+        features[offset + WALLS] = board.getPlayer(me).getWalls() - board.getPlayer(opponent).getWalls();
+        features[offset + DETOUR] = opponentDetour - myDetour;
+        features[offset + MOBILITY] = myMoves - opponentMoves;
+        features[offset + GOAL] = openDistances[opponent][opponentCell] - openDistances[me][myCell];
+    }
+
+    // Adds the features of the position on the board as a row of the batch, and returns the row.
+    public int extract(FeatureBatch batch) {
+        extract(row, 0);
+        return batch.add(row, 0);
+    }
+
+    // Returns the length of the best path of the player that does not start with its best step, counting
+    // a blocked path as a walk over every cell; the pawn moves of the player must be in the moves array.
+    private int detour(int player, int count) {
+        final PathFinder paths = board.getPaths();
+        int best = Integer.MAX_VALUE;
+        int second = Integer.MAX_VALUE;
+        for (int i = 0; i < count; ++i) {
+            final int distance = paths.distanceToGoal(player, Move.index(moves[i]));
+            if (distance < best) {
+                second = best;
+                best = distance;
+            } else if (distance < second) {
+                second = distance;
+            }
+        }
+        final int cells = board.getSize() * board.getSize();
+        return ((second == Integer.MAX_VALUE) || (second == PathFinder.UNREACHABLE)) ? cells : Math.min(second + 1, cells);
+    }
+
+    // Finds the distance from every cell to the goal of the player when there are no walls.
+    private static int[] openDistances(Board board, int player) {
+        final Geometry geometry = board.getGeometry();
+        final int cells = board.getSize() * board.getSize();
+        final int[] distances = new int[cells];
+        final int[] queue = new int[cells];
+        int tail = 0;
+        for (int cell = 0; cell < cells; ++cell) {
+            distances[cell] = -1;
+            if (board.isGoal(player, cell)) {
+                distances[cell] = 0;
+                queue[tail++] = cell;
+            }
+        }
+        for (int head = 0; head < tail; ++head) {
+            final int cell = queue[head];
+            for (Direction direction : Direction.VALUES) {
+                final int next = geometry.neighbor(cell, direction);
+                if ((next >= 0) && (distances[next] < 0)) {
+                    distances[next] = distances[cell] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return distances;
+    }
+}
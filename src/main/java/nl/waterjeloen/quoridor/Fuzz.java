@@ -0,0 +1,445 @@
+package nl.waterjeloen.quoridor;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+// Plays random games on Board and on ReferenceBoard side by side and compares them after every move: the
+// walls seen from every cell, the cells reachable from the pawns, the moves of the pawn to move and where
+// walls may go. Whether walls fit is compared at every slot, but whether they leave every player a path
+// only at a few random slots per position, as the reference searches from every pawn for each of them.
+// Every game follows from the seed and its number alone, so a run finds the same failures on any number
+// of threads; the failing game with the lowest number is reported, and the position where it failed is
+// shrunk to as few walls as still make it fail.
+//
+//   Fuzz [--games 20000] [--threads n] [--seed 1] [--size n] [--players n] [--plies 200] [--walls 4]
+//
+// Without --size and --players every game is played on a board of 3 to 11 cells by two or four players.
+public class Fuzz {
+    private static final int MIN_SIZE = 3;
+    private static final int MAX_SIZE = 11;
+    private static final int ALL = -1;
+
+    private final long seed;
+    private final int size;
+    private final int players;
+    private final int plies;
+    private final int walls;
+
+    public Fuzz(long seed, int size, int players, int plies, int walls) {
+        this.seed = seed;
+        this.size = size;
+        this.players = players;
+        this.plies = plies;
+        this.walls = walls;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int games = 20000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        int size = 0;
+        int players = 0;
+        int plies = 200;
+        int walls = 4;
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--games":
+                    games = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--size":
+                    size = Integer.parseInt(args[++i]);
+                    break;
+                case "--players":
+                    players = Integer.parseInt(args[++i]);
+                    break;
+                case "--plies":
+                    plies = Integer.parseInt(args[++i]);
+                    break;
+                case "--walls":
+                    walls = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    System.err.println("usage: Fuzz [--games 20000] [--threads n] [--seed 1] [--size n] [--players n] "
+                        + "[--plies 200] [--walls 4]");
+                    System.exit(1);
+            }
+        }
+
+        final Fuzz fuzz = new Fuzz(seed, size, players, plies, walls);
+        final long start = System.nanoTime();
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger failing = new AtomicInteger(games);
+        final AtomicLong positions = new AtomicLong();
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; ++i) {
+            pool.execute(() -> {
+                int game = next.getAndIncrement();
+                while (game < failing.get()) {
+                    final Game result = fuzz.play(game);
+                    positions.addAndGet(result.count + 1);
+                    if (result.failure != null) {
+                        failing.accumulateAndGet(game, Math::min);
+                    }
+                    game = next.getAndIncrement();
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf(Locale.ROOT, "%d positions of %d games in %.1f s on %d threads (%.0f positions/s)%n",
+            positions.get(), Math.min(next.get(), games), seconds, threads, positions.get() / seconds);
+
+        if (failing.get() == games) {
+            System.out.println("no differences");
+            return;
+        }
+        final Game failure = fuzz.play(failing.get());
+        System.out.println("game " + failure.index + " fails after " + failure.count + " moves: " + failure.failure);
+        System.out.println(failure);
+        final Position shrunk = fuzz.shrink(failure);
+        if (shrunk != null) {
+            System.out.println("shrunk to " + shrunk + ": " + shrunk.getFailure());
+        }
+        System.exit(1);
+    }
+
+    // Plays a game at random until it ends, runs out of plies or fails, checking every position on the way.
+    public Game play(int index) {
+        final SplittableRandom random = new SplittableRandom((seed << 32) ^ index);
+        final int boardSize = (size > 0) ? size : random.nextInt(MIN_SIZE, MAX_SIZE + 1);
+        final int playerCount = (players > 0) ? players : 2 * random.nextInt(1, 3);
+        final Game game = new Game(index, boardSize, playerCount, new int[plies]);
+        final Pair pair = Pair.start(boardSize, playerCount);
+        final int[] moves = new int[pair.board.getMoves().getMaxMoves()];
+        while (true) {
+            game.failure = compare(pair, random, walls);
+            if ((game.failure != null) || pair.board.isFinished() || (game.count == plies)) {
+                return game;
+            }
+            final int pawns = pair.board.getMoves().generatePawnMoves(moves, 0);
+            final int count = pair.board.getMoves().generateWalls(moves, pawns);
+            if (count == 0) {
+                return game;
+            }
+            // Half the moves are pawn moves, or the walls would run out long before a pawn gets anywhere.
+            final boolean pawn = (pawns > 0) && ((count == pawns) || random.nextBoolean());
+            final int move = pawn ? moves[random.nextInt(pawns)] : moves[pawns + random.nextInt(count - pawns)];
+            pair.play(move);
+            game.moves[game.count++] = move;
+        }
+    }
+
+    // Sets up the position in which a game failed and takes its walls away one at a time for as long as it
+    // keeps failing, now checking every slot and every cell. A position without some of its walls is still
+    // legal, as walls never open a path. Returns null when the position does not fail when checked again.
+    public Position shrink(Game game) {
+        final Board board = Board.create(game.size, game.players);
+        for (int i = 0; i < game.count; ++i) {
+            board.makeMove(game.moves[i]);
+        }
+        final List<Integer> walls = new ArrayList<>();
+        for (int slot = 0; slot < board.getWallSlotCount(); ++slot) {
+            if (board.hasHorizontalWall(slot)) {
+                walls.add(Move.horizontalWall(slot));
+            }
+            if (board.hasVerticalWall(slot)) {
+                walls.add(Move.verticalWall(slot));
+            }
+        }
+        Position best = new Position(board, walls);
+        if (best.failure == null) {
+            return null;
+        }
+        boolean shrunk = true;
+        while (shrunk) {
+            shrunk = false;
+            for (int i = best.walls.size() - 1; i >= 0; --i) {
+                final List<Integer> fewer = new ArrayList<>(best.walls);
+                fewer.remove(i);
+                final Position candidate = best.with(fewer);
+                if (candidate.failure != null) {
+                    best = candidate;
+                    shrunk = true;
+                }
+            }
+        }
+        return best;
+    }
+
+    // Returns what differs between the boards, or null when nothing does. The walls are the number of
+    // random slots at which the reference decides whether a wall may go, or ALL, which needs no random.
+    private static String compare(Pair pair, SplittableRandom random, int walls) {
+        final Board board = pair.board;
+        final ReferenceBoard reference = pair.reference;
+        final int size = board.getSize();
+        if (board.isFinished() != reference.isFinished()) {
+            return "the game is " + (board.isFinished() ? "" : "not ") + "finished";
+        }
+        if (!board.getCurrentPlayer().getLocation().equals(reference.getCurrentPlayer().getLocation())) {
+            return "player " + board.getCurrentPlayerIndex() + " is to move";
+        }
+        for (int player = 0; player < board.getPlayerCount(); ++player) {
+            if (!board.getPlayer(player).getLocation().equals(reference.getPlayer(player).getLocation())
+                    || (board.getPlayer(player).getWalls() != reference.getPlayer(player).getWalls())) {
+                return "player " + player + " is on " + board.getPlayer(player).getLocation() + " with "
+                    + board.getPlayer(player).getWalls() + " walls";
+            }
+        }
+
+        for (int cell = 0; cell < size * size; ++cell) {
+            final Location location = board.location(cell);
+            for (Direction direction : Direction.VALUES) {
+                final boolean wall = reference.hasWall(location, direction);
+                if ((board.hasWall(location, direction) != wall) || (board.hasWall(cell, direction) != wall)) {
+                    return "there is " + (wall ? "no " : "a ") + "wall " + direction + " of " + location;
+                }
+                final boolean open = !wall && location.go(direction).isValid(size);
+                if (board.canMove(cell, direction) != open) {
+                    return "a pawn can " + (open ? "not " : "") + "move " + direction + " from " + location;
+                }
+            }
+        }
+
+        for (int player = 0; player < board.getPlayerCount(); ++player) {
+            final String failure = compareReachable(pair, board.getPlayer(player).getLocation());
+            if (failure != null) {
+                return failure;
+            }
+        }
+        for (int cell = 0; cell < size * size; ++cell) {
+            final String failure = ((walls == ALL) || (random.nextInt(size * size) == 0))
+                ? compareReachable(pair, board.location(cell))
+                : null;
+            if (failure != null) {
+                return failure;
+            }
+        }
+
+        final int[] moves = new int[board.getMoves().getMaxMoves()];
+        final Location location = board.getCurrentPlayer().getLocation();
+        final int pawns = board.getMoves().generatePawnMoves(moves, 0);
+        final Set<Location> fields = new HashSet<>();
+        for (int i = 0; i < pawns; ++i) {
+            fields.add(board.location(Move.index(moves[i])));
+        }
+        final Set<Location> expected = reference.isFinished() ? Set.of() : reference.getPawnMoves(location);
+        if (fields.size() != pawns) {
+            return "the pawn on " + location + " can go to " + sorted(fields) + ", some of them twice";
+        }
+        if (!fields.equals(expected)) {
+            return "the pawn on " + location + " can go to " + sorted(fields) + ", not " + sorted(expected);
+        }
+        for (int cell = 0; cell < size * size; ++cell) {
+            if (board.getMoves().isLegalPawnMove(cell) != fields.contains(board.location(cell))) {
+                return "isLegalPawnMove(" + board.location(cell) + ") does not match the generated moves";
+            }
+        }
+
+        final int count = board.getMoves().generateWalls(moves, 0);
+        final Set<Integer> generated = new HashSet<>();
+        for (int i = 0; i < count; ++i) {
+            generated.add(moves[i]);
+        }
+        final boolean[] checked = new boolean[2 * board.getWallSlotCount()];
+        for (int i = 0; i < walls; ++i) {
+            checked[random.nextInt(checked.length)] = true;
+        }
+        for (int slot = 0; slot < board.getWallSlotCount(); ++slot) {
+            final Location wall = Location.of(board.wallRow(slot), board.wallColumn(slot));
+            for (int move : new int[] { Move.horizontalWall(slot), Move.verticalWall(slot) }) {
+                final boolean horizontal = Move.type(move) == Move.HORIZONTAL_WALL;
+                final boolean legal = board.getMoves().isLegal(move);
+                if (legal != generated.contains(move)) {
+                    return Move.toString(board, move) + " is " + (legal ? "" : "not ") + "legal but "
+                        + (legal ? "not " : "") + "generated";
+                }
+                final boolean fits = horizontal ? reference.fitsHorizontalWall(wall) : reference.fitsVerticalWall(wall);
+                if (board.fits(move) != fits) {
+                    return Move.toString(board, move) + " does " + (fits ? "" : "not ") + "fit";
+                }
+                if ((walls == ALL) || checked[WallImpact.bit(move)]) {
+                    final boolean allowed = horizontal
+                        ? reference.canPlaceHorizontalWall(wall)
+                        : reference.canPlaceVerticalWall(wall);
+                    if (legal != allowed) {
+                        return Move.toString(board, move) + " is " + (allowed ? "" : "not ") + "legal";
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String compareReachable(Pair pair, Location location) {
+        final Set<Location> reachable = pair.board.getReachableLocations(location);
+        final Set<Location> expected = pair.reference.getReachableLocations(location);
+        if ((reachable.size() != expected.size()) || !expected.containsAll(reachable)) {
+            return "from " + location + " can be reached " + sorted(reachable) + ", not " + sorted(expected);
+        }
+        return null;
+    }
+
+    private static String sorted(Set<Location> locations) {
+        return locations.stream()
+            .sorted((a, b) -> (a.row != b.row) ? Integer.compare(a.row, b.row) : Integer.compare(a.column, b.column))
+            .map(Location::toString)
+            .collect(Collectors.joining(" ", "[", "]"));
+    }
+
+    // The same position on both boards, with players of their own.
+    private static class Pair {
+        private final Board board;
+        private final ReferenceBoard reference;
+
+        private Pair(int size, Player... players) {
+            this.board = new Board(size, copies(players));
+            this.reference = new ReferenceBoard(size, copies(players));
+        }
+
+        private static Pair start(int size, int players) {
+            final Board board = Board.create(size, players);
+            final Player[] seats = new Player[players];
+            for (int i = 0; i < players; ++i) {
+                seats[i] = board.getPlayer(i);
+            }
+            return new Pair(size, seats);
+        }
+
+        private static Player[] copies(Player[] players) {
+            final Player[] copies = new Player[players.length];
+            for (int i = 0; i < players.length; ++i) {
+                copies[i] = players[i].copy();
+            }
+            return copies;
+        }
+
+        private void place(int wall) {
+            final int slot = Move.index(wall);
+            board.placeWall(wall);
+            reference.placeWall(Location.of(board.wallRow(slot), board.wallColumn(slot)),
+                Move.type(wall) == Move.HORIZONTAL_WALL);
+        }
+
+        private void play(int move) {
+            final int index = Move.index(move);
+            switch (Move.type(move)) {
+                case Move.PAWN:
+                    reference.movePlayer(board.location(index));
+                    break;
+                case Move.HORIZONTAL_WALL:
+                    reference.addHorizontalWall(Location.of(board.wallRow(index), board.wallColumn(index)));
+                    break;
+                default:
+                    reference.addVerticalWall(Location.of(board.wallRow(index), board.wallColumn(index)));
+                    break;
+            }
+            board.makeMove(move);
+        }
+    }
+
+    // A position set up without the moves that led to it: the pawns, starting with the one to move, and the
+    // walls on the board.
+    public static final class Position {
+        private final int size;
+        private final Player[] players;
+        private final List<Integer> walls;
+        private final String failure;
+
+        private Position(Board board, List<Integer> walls) {
+            this.size = board.getSize();
+            this.players = new Player[board.getPlayerCount()];
+            for (int i = 0; i < players.length; ++i) {
+                players[i] = board.getPlayer((board.getCurrentPlayerIndex() + i) % players.length).copy();
+            }
+            this.walls = walls;
+            this.failure = check();
+        }
+
+        private Position(Position other, List<Integer> walls) {
+            this.size = other.size;
+            this.players = other.players;
+            this.walls = walls;
+            this.failure = check();
+        }
+
+        private Position with(List<Integer> walls) {
+            return new Position(this, walls);
+        }
+
+        private String check() {
+            final Pair pair = new Pair(size, players);
+            for (int wall : walls) {
+                pair.place(wall);
+            }
+            return compare(pair, null, ALL);
+        }
+
+        public String getFailure() {
+            return failure;
+        }
+
+        @Override
+        public String toString() {
+            final Board board = Board.create(size, players.length);
+            final StringBuilder text = new StringBuilder("a board of " + size + " with the pawn to move on "
+                + players[0].getLocation() + " and " + players[0].getWalls() + " walls, the others on");
+            for (int i = 1; i < players.length; ++i) {
+                text.append(' ').append(players[i].getLocation());
+            }
+            text.append(", walls");
+            for (int wall : walls) {
+                text.append(' ').append(Move.toString(board, wall));
+            }
+            return text.toString();
+        }
+    }
+
+    // The moves of a game and the first thing that differed, if anything did.
+    public static final class Game {
+        private final int index;
+        private final int size;
+        private final int players;
+        private final int[] moves;
+        private int count;
+        private String failure;
+
+        private Game(int index, int size, int players, int[] moves) {
+            this.index = index;
+            this.size = size;
+            this.players = players;
+            this.moves = moves;
+        }
+
+        public String getFailure() {
+            return failure;
+        }
+
+        @Override
+        public String toString() {
+            final Board board = Board.create(size, players);
+            final StringBuilder text = new StringBuilder("game " + index + " on a board of " + size + " with "
+                + players + " players:");
+            for (int i = 0; i < count; ++i) {
+                text.append(' ').append(Move.toString(board, moves[i]));
+            }
+            return text.toString();
+        }
+    }
+}
@@ -1,15 +1,21 @@
 package nl.waterjeloen.quoridor;
 
 import javax.swing.*;
+import java.awt.BorderLayout;
 import java.awt.Dimension;
 
 public class GUI extends JFrame {
     private final BoardPanel panel;
+    private final JLabel status;
 
     public GUI(Board board) {
         this.panel = new BoardPanel(board);
+        this.status = new JLabel(" ");
 
-        setContentPane(panel);
+        final JPanel content = new JPanel(new BorderLayout());
+        content.add(panel, BorderLayout.CENTER);
+        content.add(status, BorderLayout.SOUTH);
+        setContentPane(content);
         setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
         setPreferredSize(new Dimension(1000, 1000));
         pack();
@@ -22,4 +28,11 @@ public class GUI extends JFrame {
     public void showMessage(String message) {
         JOptionPane.showMessageDialog(this, message);
     }
+
+    // Shows a line of text below the board; only the label is repainted when it changes.
+    public void showStatus(String text) {
+        if (!text.equals(status.getText())) {
+            status.setText(text.isEmpty() ? " " : text);
+        }
+    }
 }
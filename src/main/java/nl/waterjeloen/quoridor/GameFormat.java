@@ -0,0 +1,112 @@
+package nl.waterjeloen.quoridor;
+
+import java.nio.ByteBuffer;
+
+// The layout of a game archive. The file starts with a header (magic, version, board size, players),
+// followed by the games and finally an index of where every game starts. Games start from the standard
+// position of Board.create:
+//
+//   game:    plies (u16), payload bytes (u16), winner (u8, 0xFF when nobody won), payload
+//   trailer: game offsets (u64 each), index offset (u64), game count (u32), index magic (u32)
+//
+// The payload packs the moves as bits, most significant first. A pawn move is a 0 bit and 4 bits for
+// where it goes relative to the pawn: a step or a jump in one Direction, or one of the four diagonals.
+// A wall is a 1 bit, a bit for the orientation (0 horizontal, 1 vertical), and the wall slot.
+final class GameFormat {
+    static final int MAGIC = 0x51475231;
+    static final int INDEX_MAGIC = 0x51494458;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 8;
+    static final int GAME_HEADER_BYTES = 5;
+    static final int TRAILER_BYTES = 16;
+    static final int MAX_PLIES = 0xFFFF;
+    static final int MAX_GAME_BYTES = GAME_HEADER_BYTES + 0xFFFF;
+    static final int NO_WINNER = 0xFF;
+
+    private static final int PAWN_BITS = 4;
+    private static final int JUMP = 4;
+    private static final int DIAGONAL = 8;
+
+    private GameFormat() {
+    }
+
+    static int slotBits(int size) {
+        final int slots = (size - 1) * (size - 1);
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(slots - 1));
+    }
+
+    // Appends a move played on the board to the payload, returning the new bit position.
+    static int encode(Board board, int move, byte[] payload, int bit) {
+        final int index = Move.index(move);
+        if (Move.isWall(move)) {
+            bit = write(payload, bit, 1, 1);
+            bit = write(payload, bit, (Move.type(move) == Move.HORIZONTAL_WALL) ? 0 : 1, 1);
+            return write(payload, bit, index, slotBits(board.getSize()));
+        }
+        final int from = board.getPlayerCell(board.getCurrentPlayerIndex());
+        final int rows = board.row(index) - board.row(from);
+        final int columns = board.column(index) - board.column(from);
+        int code = -1;
+        if ((rows != 0) && (columns != 0)) {
+            code = DIAGONAL + ((rows > 0) ? 2 : 0) + ((columns > 0) ? 1 : 0);
+        } else {
+            for (Direction direction : Direction.VALUES) {
+                if ((rows == direction.rowDelta) && (columns == direction.columnDelta)) {
+                    code = direction.ordinal();
+                } else if ((rows == 2 * direction.rowDelta) && (columns == 2 * direction.columnDelta)) {
+                    code = JUMP + direction.ordinal();
+                }
+            }
+        }
+        if (code < 0) {
+            throw new IllegalArgumentException("cannot encode pawn move " + Move.toString(board, move));
+        }
+        bit = write(payload, bit, 0, 1);
+        return write(payload, bit, code, PAWN_BITS);
+    }
+
+    // Reads the move that starts at the bit position of the payload at the offset in the buffer.
+    static int decode(Board board, ByteBuffer buffer, int offset, int bit) {
+        if (read(buffer, offset, bit, 1) == 1) {
+            final int slot = read(buffer, offset, bit + 2, slotBits(board.getSize()));
+            return (read(buffer, offset, bit + 1, 1) == 0) ? Move.horizontalWall(slot) : Move.verticalWall(slot);
+        }
+
+        final int code = read(buffer, offset, bit + 1, PAWN_BITS);
+        final int from = board.getPlayerCell(board.getCurrentPlayerIndex());
+        int row = board.row(from);
+        int column = board.column(from);
+        if (code >= DIAGONAL) {
+            row += (code - DIAGONAL >= 2) ? 1 : -1;
+            column += ((code - DIAGONAL) % 2 == 1) ? 1 : -1;
+        } else {
+            final Direction direction = Direction.VALUES[code % JUMP];
+            final int steps = (code >= JUMP) ? 2 : 1;
+            row += steps * direction.rowDelta;
+            column += steps * direction.columnDelta;
+        }
+        return Move.pawn(board.cell(row, column));
+    }
+
+    static int bits(Board board, int move) {
+        return Move.isWall(move) ? 2 + slotBits(board.getSize()) : 1 + PAWN_BITS;
+    }
+
+    private static int write(byte[] payload, int bit, int value, int bits) {
+        for (int i = bits - 1; i >= 0; --i) {
+            if (((value >>> i) & 1) != 0) {
+                payload[bit >>> 3] |= (byte) (0x80 >>> (bit & 7));
+            }
+            ++bit;
+        }
+        return bit;
+    }
+
+    private static int read(ByteBuffer buffer, int offset, int bit, int bits) {
+        int value = 0;
+        for (int i = 0; i < bits; ++i, ++bit) {
+            value = (value << 1) | ((buffer.get(offset + (bit >>> 3)) >>> (7 - (bit & 7))) & 1);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,153 @@
+package nl.waterjeloen.quoridor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Reads an archive written by GameWriter through memory-mapped segments, so only the pages of the games
+// that are looked at are loaded. Consecutive segments overlap by the size of the largest game, so every
+// game lies within the segment its offset falls in. The index at the end of the file is mapped as well;
+// an archive whose writer never closed it is scanned once to rebuild the index.
+public class GameReader implements Closeable {
+    private static final long SEGMENT = 1L << 30;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final LongBuffer index;
+    private final int size;
+    private final int playerCount;
+    private final int games;
+
+    public GameReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        final long length = channel.size();
+        if (length < GameFormat.HEADER_BYTES) {
+            throw new IOException(path + " is not a game archive");
+        }
+        this.segments = new MappedByteBuffer[(int) ((length + SEGMENT - 1) / SEGMENT)];
+        for (int i = 0; i < segments.length; ++i) {
+            final long start = i * SEGMENT;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                Math.min(SEGMENT + GameFormat.MAX_GAME_BYTES, length - start));
+        }
+
+        final ByteBuffer header = segments[0];
+        if ((header.getInt(0) != GameFormat.MAGIC) || (header.get(4) != GameFormat.VERSION)) {
+            throw new IOException(path + " is not a game archive");
+        }
+        this.size = header.get(5);
+        this.playerCount = Math.max(2, header.get(6));
+
+        final ByteBuffer trailer = ByteBuffer.allocate(GameFormat.TRAILER_BYTES);
+        if (length >= GameFormat.HEADER_BYTES + GameFormat.TRAILER_BYTES) {
+            channel.read(trailer, length - GameFormat.TRAILER_BYTES);
+        }
+        if (trailer.getInt(12) == GameFormat.INDEX_MAGIC) {
+            this.games = trailer.getInt(8);
+            this.index = channel.map(FileChannel.MapMode.READ_ONLY, trailer.getLong(0), 8L * games).asLongBuffer();
+        } else {
+            final LongBuffer scanned = scan(length);
+            this.games = scanned.limit();
+            this.index = scanned;
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getPlayerCount() {
+        return playerCount;
+    }
+
+    public int getGameCount() {
+        return games;
+    }
+
+    public int getPlies(int game) {
+        final long offset = index.get(game);
+        return segment(offset).getShort(position(offset)) & 0xFFFF;
+    }
+
+    // Returns the index of the player who won the game, or -1 when the game was not finished.
+    public int getWinner(int game) {
+        final long offset = index.get(game);
+        final int winner = segment(offset).get(position(offset) + 4) & 0xFF;
+        return (winner == GameFormat.NO_WINNER) ? -1 : winner;
+    }
+
+    // Decodes the moves of a game into the array, which must hold getPlies(game) moves.
+    public int read(int game, int[] moves) {
+        return read(game, Board.create(size, playerCount), moves);
+    }
+
+    // Decodes the moves of a game while playing them on the board, which must be at the start of a game;
+    // the board is left at the end of the game.
+    int read(int game, Board board, int[] moves) {
+        final int plies = getPlies(game);
+        replay(game, plies, board, moves);
+        return plies;
+    }
+
+    // Returns the position after the first plies of a game.
+    public Board replay(int game, int plies) {
+        if ((plies < 0) || (plies > getPlies(game))) {
+            throw new IndexOutOfBoundsException("game " + game + " has no ply " + plies);
+        }
+        final Board board = Board.create(size, playerCount);
+        replay(game, plies, board, null);
+        return board;
+    }
+
+    private void replay(int game, int plies, Board board, int[] moves) {
+        final long offset = index.get(game);
+        final ByteBuffer buffer = segment(offset);
+        final int payload = position(offset) + GameFormat.GAME_HEADER_BYTES;
+        int bit = 0;
+        for (int ply = 0; ply < plies; ++ply) {
+            final int move = GameFormat.decode(board, buffer, payload, bit);
+            if (moves != null) {
+                moves[ply] = move;
+            }
+            bit += GameFormat.bits(board, move);
+            board.makeMove(move);
+        }
+    }
+
+    private LongBuffer scan(long length) {
+        long[] offsets = new long[1024];
+        int count = 0;
+        long offset = GameFormat.HEADER_BYTES;
+        while (offset + GameFormat.GAME_HEADER_BYTES <= length) {
+            final int bytes = segment(offset).getShort(position(offset) + 2) & 0xFFFF;
+            if (offset + GameFormat.GAME_HEADER_BYTES + bytes > length) {
+                break;
+            }
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+            }
+            offsets[count++] = offset;
+            offset += GameFormat.GAME_HEADER_BYTES + bytes;
+        }
+        return LongBuffer.wrap(offsets, 0, count).slice();
+    }
+
+    private ByteBuffer segment(long offset) {
+        return segments[(int) (offset / SEGMENT)];
+    }
+
+    private static int position(long offset) {
+        return (int) (offset % SEGMENT);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,95 @@
+package nl.waterjeloen.quoridor;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// Appends games to an archive one at a time; only the offsets of the games are kept until the index is
+// written on close.
+public class GameWriter implements Closeable {
+    private final DataOutputStream output;
+    private final int size;
+    private final int playerCount;
+    private final Board scratch;
+    private final byte[] payload;
+    private long position;
+    private long[] offsets;
+    private int games;
+
+    public GameWriter(Path path, int size) throws IOException {
+        this(path, size, 2);
+    }
+
+    public GameWriter(Path path, int size, int playerCount) throws IOException {
+        this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+        this.size = size;
+        this.playerCount = playerCount;
+        this.scratch = Board.create(size, playerCount);
+        this.payload = new byte[GameFormat.MAX_GAME_BYTES];
+        this.offsets = new long[1024];
+        this.games = 0;
+
+        output.writeInt(GameFormat.MAGIC);
+        output.writeByte(GameFormat.VERSION);
+        output.writeByte(size);
+        output.writeByte(playerCount);
+        output.writeByte(0);
+        this.position = GameFormat.HEADER_BYTES;
+    }
+
+    public int getGameCount() {
+        return games;
+    }
+
+    // Writes the moves of a game that was played from the standard starting position.
+    public void write(Board board) throws IOException {
+        final int plies = board.getPly();
+        if ((board.getSize() != size) || (board.getPlayerCount() != playerCount) || (plies > GameFormat.MAX_PLIES)) {
+            throw new IllegalArgumentException("cannot write a game of " + plies + " plies with "
+                + board.getPlayerCount() + " players on a board of size " + board.getSize());
+        }
+
+        while (scratch.getPly() > 0) {
+            scratch.unmakeMove();
+        }
+        Arrays.fill(payload, (byte) 0);
+        int bit = 0;
+        for (int ply = 0; ply < plies; ++ply) {
+            final int move = board.getMove(ply);
+            bit = GameFormat.encode(scratch, move, payload, bit);
+            scratch.makeMove(move);
+        }
+        if (scratch.getHash() != board.getHash()) {
+            throw new IllegalArgumentException("the game does not start from the standard position");
+        }
+
+        if (games == offsets.length) {
+            offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+        }
+        offsets[games++] = position;
+        final int bytes = (bit + 7) / 8;
+        output.writeShort(plies);
+        output.writeShort(bytes);
+        output.writeByte(board.isFinished() ? board.getCurrentPlayerIndex() : GameFormat.NO_WINNER);
+        output.write(payload, 0, bytes);
+        position += GameFormat.GAME_HEADER_BYTES + bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            for (int i = 0; i < games; ++i) {
+                output.writeLong(offsets[i]);
+            }
+            output.writeLong(position);
+            output.writeInt(games);
+            output.writeInt(GameFormat.INDEX_MAGIC);
+        } finally {
+            output.close();
+        }
+    }
+}
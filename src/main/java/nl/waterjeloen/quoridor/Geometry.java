@@ -0,0 +1,160 @@
+package nl.waterjeloen.quoridor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The tables that only depend on the size of the board, built once per size and shared by all boards of
+// that size: the neighbour of every cell in every direction, the cells on both sides of the edges every
+// wall blocks, and for every wall the walls it cannot share the board with, as masks over the slots.
+// Walls are numbered as in WallImpact.bit: two per slot, the vertical one odd. A wall only conflicts with
+// walls at most a row of slots away, so only the one or two words around it are ever looked at.
+public final class Geometry {
+    public static final int MAX_SIZE = 64;
+
+    private static final Map<Integer, Geometry> SIZES = new ConcurrentHashMap<>();
+
+    private final int size;
+    private final int wallSize;
+    private final int[] neighbors;
+    private final byte[] edges;
+    private final int[] wallCells;
+    private final long[][] horizontalConflicts;
+    private final long[][] verticalConflicts;
+    private final int[] firstWords;
+    private final int[] lastWords;
+    private final long[] slots;
+    private final long[] notFirstColumn;
+    private final long[] notLastColumn;
+
+    private Geometry(int size) {
+        if ((size < 2) || (size > MAX_SIZE)) {
+            throw new IllegalArgumentException("a board is 2 to " + MAX_SIZE + " cells wide");
+        }
+        this.size = size;
+        this.wallSize = size - 1;
+        this.neighbors = new int[size * size * Direction.VALUES.length];
+        this.edges = new byte[size * size];
+        for (int cell = 0; cell < size * size; ++cell) {
+            for (Direction direction : Direction.VALUES) {
+                final int row = cell / size + direction.rowDelta;
+                final int column = cell % size + direction.columnDelta;
+                final boolean inside = (row >= 0) && (row < size) && (column >= 0) && (column < size);
+                neighbors[cell * Direction.VALUES.length + direction.ordinal()] = inside ? row * size + column : -1;
+                if (!inside) {
+                    edges[cell] |= direction.bit();
+                }
+            }
+        }
+
+        final int walls = 2 * wallSize * wallSize;
+        this.wallCells = new int[4 * walls];
+        this.horizontalConflicts = new long[walls][Bits.words(wallSize * wallSize)];
+        this.verticalConflicts = new long[walls][Bits.words(wallSize * wallSize)];
+        this.firstWords = new int[walls];
+        this.lastWords = new int[walls];
+        this.slots = new long[Bits.words(wallSize * wallSize)];
+        this.notFirstColumn = new long[slots.length];
+        this.notLastColumn = new long[slots.length];
+        for (int slot = 0; slot < wallSize * wallSize; ++slot) {
+            final int row = slot / wallSize;
+            final int column = slot % wallSize;
+            final int cell = row * size + column;
+            final int horizontal = 2 * slot;
+            final int vertical = horizontal + 1;
+            setCells(horizontal, cell, cell + size, cell + 1, cell + size + 1);
+            setCells(vertical, cell, cell + 1, cell + size, cell + size + 1);
+
+            // Walls that cross in the middle of the slot, or lie in line and overlap half of it.
+            for (int wall : new int[] { horizontal, vertical }) {
+                Bits.set(horizontalConflicts[wall], slot);
+                Bits.set(verticalConflicts[wall], slot);
+            }
+            if (column > 0) {
+                Bits.set(horizontalConflicts[horizontal], slot - 1);
+            }
+            if (column < wallSize - 1) {
+                Bits.set(horizontalConflicts[horizontal], slot + 1);
+            }
+            if (row > 0) {
+                Bits.set(verticalConflicts[vertical], slot - wallSize);
+            }
+            if (row < wallSize - 1) {
+                Bits.set(verticalConflicts[vertical], slot + wallSize);
+            }
+            Bits.set(slots, slot);
+            if (column > 0) {
+                Bits.set(notFirstColumn, slot);
+            }
+            if (column < wallSize - 1) {
+                Bits.set(notLastColumn, slot);
+            }
+            firstWords[horizontal] = Math.max(0, slot - 1) >>> 6;
+            lastWords[horizontal] = Math.min(slot + 1, wallSize * wallSize - 1) >>> 6;
+            firstWords[vertical] = Math.max(0, slot - wallSize) >>> 6;
+            lastWords[vertical] = Math.min(slot + wallSize, wallSize * wallSize - 1) >>> 6;
+        }
+    }
+
+    public static Geometry of(int size) {
+        return SIZES.computeIfAbsent(size, Geometry::new);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    // Returns the cell next to the cell in the direction, or -1 past the border.
+    public int neighbor(int cell, Direction direction) {
+        return neighbors[cell * Direction.VALUES.length + direction.ordinal()];
+    }
+
+    // Returns the directions in which the cell lies on the border, as Direction bits.
+    public int edges(int cell) {
+        return edges[cell];
+    }
+
+    // Returns one of the four cells around a wall: the first two lie on both sides of one edge the wall
+    // blocks, the last two on both sides of the other.
+    public int wallCell(int wall, int index) {
+        return wallCells[4 * wall + index];
+    }
+
+    // Tells whether a wall fits between the horizontal and vertical walls on a board, given as bits per slot.
+    public boolean fits(int wall, long[] horizontalWalls, long[] verticalWalls) {
+        final long[] horizontal = horizontalConflicts[wall];
+        final long[] vertical = verticalConflicts[wall];
+        for (int i = firstWords[wall]; i <= lastWords[wall]; ++i) {
+            if (((horizontalWalls[i] & horizontal[i]) | (verticalWalls[i] & vertical[i])) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Marks the slots where a horizontal and where a vertical wall fits between the walls on a board, for
+    // all slots at once: the walls are shifted by one column and by one row to find their neighbours.
+    public void fitting(long[] horizontalWalls, long[] verticalWalls, long[] horizontalFree, long[] verticalFree) {
+        final int words = slots.length;
+        for (int i = 0; i < words; ++i) {
+            final long horizontal = horizontalWalls[i];
+            final long vertical = verticalWalls[i];
+            final long previousHorizontal = (i > 0) ? horizontalWalls[i - 1] : 0;
+            final long nextHorizontal = (i < words - 1) ? horizontalWalls[i + 1] : 0;
+            final long previousVertical = (i > 0) ? verticalWalls[i - 1] : 0;
+            final long nextVertical = (i < words - 1) ? verticalWalls[i + 1] : 0;
+            final long left = ((horizontal << 1) | (previousHorizontal >>> 63)) & notFirstColumn[i];
+            final long right = ((horizontal >>> 1) | (nextHorizontal << 63)) & notLastColumn[i];
+            final long above = (vertical << wallSize) | (previousVertical >>> (64 - wallSize));
+            final long below = (vertical >>> wallSize) | (nextVertical << (64 - wallSize));
+            horizontalFree[i] = ~(horizontal | vertical | left | right) & slots[i];
+            verticalFree[i] = ~(horizontal | vertical | above | below) & slots[i];
+        }
+    }
+
+    private void setCells(int wall, int first, int second, int third, int fourth) {
+        wallCells[4 * wall] = first;
+        wallCells[4 * wall + 1] = second;
+        wallCells[4 * wall + 2] = third;
+        wallCells[4 * wall + 3] = fourth;
+    }
+}
@@ -0,0 +1,90 @@
+package nl.waterjeloen.quoridor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+// Counts values, typically nanoseconds, in buckets that grow with the value: the values below 32 each
+// have their own bucket, and above that every power of two is split in sixteen. A percentile is therefore
+// off by at most one part in sixteen, whatever its size, while recording is a single increment.
+final class Histogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int HALF_COUNT = SUB_COUNT / 2;
+    private static final int BUCKETS = (65 - SUB_BITS) * HALF_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    void record(long value) {
+        final long clamped = Math.max(0, value);
+        counts.incrementAndGet(index(clamped));
+        max.accumulate(clamped);
+    }
+
+    long count() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    long max() {
+        return max.get();
+    }
+
+    double mean() {
+        long count = 0;
+        double total = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            final long n = counts.get(i);
+            count += n;
+            total += n * (lowest(i) + highest(i)) / 2.0;
+        }
+        return (count == 0) ? 0 : total / count;
+    }
+
+    // Returns the highest value of the bucket that holds the given percentile, but never more than the max.
+    long percentile(double percentile) {
+        final long count = count();
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highest(i), max());
+            }
+        }
+        return max();
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; ++i) {
+            counts.set(i, 0);
+        }
+        max.reset();
+    }
+
+    private static int index(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+        return shift * HALF_COUNT + (int) (value >>> shift);
+    }
+
+    private static long lowest(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        final int shift = index / HALF_COUNT - 1;
+        return (long) (index - shift * HALF_COUNT) << shift;
+    }
+
+    private static long highest(int index) {
+        return (index == BUCKETS - 1) ? Long.MAX_VALUE : lowest(index + 1) - 1;
+    }
+}
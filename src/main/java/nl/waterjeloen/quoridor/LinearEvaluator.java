@@ -0,0 +1,111 @@
+package nl.waterjeloen.quoridor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Scores a position as the sum of its features times their weights, in the units of AlphaBeta: a hundred
+// is a step on the path. The default weights give the same scores as the evaluation built into AlphaBeta.
+// Weights are saved as text, a feature name and its weight per line; lines starting with # are comments
+// and features that are not mentioned weigh nothing. A weight is at most MAX_WEIGHT either way, so a sum
+// over the features of a board of at most 64 by 64 cells cannot overflow; AlphaBeta keeps the sums below
+// the scores of wins.
+public final class LinearEvaluator {
+    public static final int MAX_WEIGHT = 1000;
+
+    private final int[] weights;
+
+    public LinearEvaluator(int[] weights) {
+        if (weights.length != Features.COUNT) {
+            throw new IllegalArgumentException("there are " + Features.COUNT + " weights, not " + weights.length);
+        }
+        for (int weight : weights) {
+            if (Math.abs(weight) > MAX_WEIGHT) {
+                throw new IllegalArgumentException("a weight is at most " + MAX_WEIGHT + " either way, not " + weight);
+            }
+        }
+        this.weights = weights.clone();
+    }
+
+    public static LinearEvaluator defaults() {
+        final int[] weights = new int[Features.COUNT];
+        weights[Features.PATH] = 100;
+        weights[Features.WALLS] = 10;
+        return new LinearEvaluator(weights);
+    }
+
+    public static LinearEvaluator load(Path path) throws IOException {
+        final int[] weights = new int[Features.COUNT];
+        for (String line : Files.readAllLines(path)) {
+            final String text = line.trim();
+            if (text.isEmpty() || text.startsWith("#")) {
+                continue;
+            }
+            final String[] parts = text.split("\\s+");
+            final int feature = Features.feature(parts[0]);
+            if ((parts.length != 2) || (feature < 0)) {
+                throw new IOException("cannot read weight '" + line + "' in " + path);
+            }
+            weights[feature] = Integer.parseInt(parts[1]);
+            if (Math.abs(weights[feature]) > MAX_WEIGHT) {
+                throw new IOException("weight '" + line + "' in " + path + " is not within " + MAX_WEIGHT + " either way");
+            }
+        }
+        return new LinearEvaluator(weights);
+    }
+
+    public void save(Path path, String comment) throws IOException {
+        final List<String> lines = new ArrayList<>();
+        if (comment != null) {
+            lines.add("# " + comment);
+        }
+        for (int feature = 0; feature < Features.COUNT; ++feature) {
+            lines.add(Features.name(feature) + " " + weights[feature]);
+        }
+        Files.write(path, lines);
+    }
+
+    public int getWeight(int feature) {
+        return weights[feature];
+    }
+
+    public int[] getWeights() {
+        return weights.clone();
+    }
+
+    // Scores the features in the array from the offset on.
+    public int evaluate(int[] features, int offset) {
+        int score = 0;
+        for (int feature = 0; feature < Features.COUNT; ++feature) {
+            score += weights[feature] * features[offset + feature];
+        }
+        return score;
+    }
+
+    // Scores every row of the batch into the scores, a feature at a time over all rows.
+    public void score(FeatureBatch batch, int[] scores) {
+        final int rows = batch.size();
+        Arrays.fill(scores, 0, rows, 0);
+        for (int feature = 0; feature < Features.COUNT; ++feature) {
+            final int weight = weights[feature];
+            final int[] column = batch.column(feature);
+            if (weight != 0) {
+                for (int row = 0; row < rows; ++row) {
+                    scores[row] += weight * column[row];
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder text = new StringBuilder();
+        for (int feature = 0; feature < Features.COUNT; ++feature) {
+            text.append((feature > 0) ? " " : "").append(Features.name(feature)).append(' ').append(weights[feature]);
+        }
+        return text.toString();
+    }
+}
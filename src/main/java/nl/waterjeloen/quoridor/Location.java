@@ -1,26 +1,58 @@
 package nl.waterjeloen.quoridor;
 
-import java.util.Objects;
-
+// Locations are values, but the ones on and just around any board up to LIMIT - 2 * MARGIN cells wide are
+// shared from one table, together with links to their neighbours, so walking the board does not allocate.
+// Use of() to get one; locations from the constructor still compare equal to the shared ones.
 public class Location {
+    private static final int MARGIN = 2;
+    private static final int LIMIT = 64;
+    private static final Location[] TABLE = new Location[LIMIT * LIMIT];
+
+    static {
+        for (int i = 0; i < TABLE.length; ++i) {
+            TABLE[i] = new Location(i / LIMIT - MARGIN, i % LIMIT - MARGIN, new Location[Direction.VALUES.length]);
+        }
+        for (Location location : TABLE) {
+            for (Direction direction : Direction.VALUES) {
+                location.neighbors[direction.ordinal()] = of(location.row + direction.rowDelta, location.column + direction.columnDelta);
+            }
+        }
+    }
+
     public final int row;
     public final int column;
+    private final Location[] neighbors;
 
     public Location(int row, int column) {
+        this(row, column, null);
+    }
+
+    private Location(int row, int column, Location[] neighbors) {
         this.row = row;
         this.column = column;
+        this.neighbors = neighbors;
+    }
+
+    public static Location of(int row, int column) {
+        final int r = row + MARGIN;
+        final int c = column + MARGIN;
+        if (((r | c) >= 0) && (r < LIMIT) && (c < LIMIT)) {
+            return TABLE[r * LIMIT + c];
+        }
+        return new Location(row, column);
     }
 
     public Location go(Direction direction) {
-        final int newRow = row + direction.rowDelta;
-        final int newColumn = column + direction.columnDelta;
-        return new Location(newRow, newColumn);
+        if (neighbors != null) {
+            return neighbors[direction.ordinal()];
+        }
+        return of(row + direction.rowDelta, column + direction.columnDelta);
     }
 
     public Location wall(Direction side) {
         final int newRow = row + (side.rowDelta - 1) / 2;
         final int newColumn = column + (side.columnDelta - 1) / 2;
-        return new Location(newRow, newColumn);
+        return of(newRow, newColumn);
     }
 
     public Location left() {
@@ -28,7 +60,7 @@ public class Location {
     }
 
     public Location left(int amount) {
-        return new Location(row, column - amount);
+        return (amount == 1) ? go(Direction.LEFT) : of(row, column - amount);
     }
 
     public Location right() {
@@ -36,7 +68,7 @@ public class Location {
     }
 
     public Location right(int amount) {
-        return new Location(row, column + amount);
+        return (amount == 1) ? go(Direction.RIGHT) : of(row, column + amount);
     }
 
     public Location up() {
@@ -44,7 +76,7 @@ public class Location {
     }
 
     public Location up(int amount) {
-        return new Location(row - amount, column);
+        return (amount == 1) ? go(Direction.UP) : of(row - amount, column);
     }
 
     public Location down() {
@@ -52,7 +84,7 @@ public class Location {
     }
 
     public Location down(int amount) {
-        return new Location(row + amount, column);
+        return (amount == 1) ? go(Direction.DOWN) : of(row + amount, column);
     }
 
     public boolean isValid(int size) {
@@ -81,7 +113,7 @@ public class Location {
 
     @Override
     public int hashCode() {
-        return Objects.hash(row, column);
+        return 31 * row + column;
     }
 
     @Override
@@ -0,0 +1,139 @@
+package nl.waterjeloen.quoridor;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+// A map from the locations on a board of the given size, kept as one slot per cell. Keys must be on the
+// board and values must not be null.
+public class LocationMap<V> extends AbstractMap<Location, V> {
+    private final int size;
+    private final Object[] values;
+    private int count;
+
+    public LocationMap(int size) {
+        this.size = size;
+        this.values = new Object[size * size];
+        this.count = 0;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        final int cell = cell(key);
+        return (cell >= 0) && (values[cell] != null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        final int cell = cell(key);
+        return (cell >= 0) ? (V) values[cell] : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(Location key, V value) {
+        Objects.requireNonNull(value);
+        final int cell = cell(key);
+        if (cell < 0) {
+            throw new IllegalArgumentException(key + " is not on a board of size " + size);
+        }
+        final V previous = (V) values[cell];
+        if (previous == null) {
+            ++count;
+        }
+        values[cell] = value;
+        return previous;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        final int cell = cell(key);
+        if ((cell < 0) || (values[cell] == null)) {
+            return null;
+        }
+        final V previous = (V) values[cell];
+        values[cell] = null;
+        --count;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        if (count > 0) {
+            Arrays.fill(values, null);
+            count = 0;
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<Location, V>> entrySet() {
+        return new AbstractSet<Map.Entry<Location, V>>() {
+            @Override
+            public int size() {
+                return count;
+            }
+
+            @Override
+            public Iterator<Map.Entry<Location, V>> iterator() {
+                return new Iterator<Map.Entry<Location, V>>() {
+                    private int next = nextCell(0);
+                    private int last = -1;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < values.length;
+                    }
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public Map.Entry<Location, V> next() {
+                        if (next >= values.length) {
+                            throw new NoSuchElementException();
+                        }
+                        last = next;
+                        next = nextCell(next + 1);
+                        return new SimpleImmutableEntry<>(Location.of(last / size, last % size), (V) values[last]);
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (last < 0) {
+                            throw new IllegalStateException();
+                        }
+                        values[last] = null;
+                        --count;
+                        last = -1;
+                    }
+                };
+            }
+        };
+    }
+
+    private int nextCell(int from) {
+        int cell = from;
+        while ((cell < values.length) && (values[cell] == null)) {
+            ++cell;
+        }
+        return cell;
+    }
+
+    private int cell(Object object) {
+        if (!(object instanceof Location)) {
+            return -1;
+        }
+        final Location location = (Location) object;
+        return location.isValid(size) ? location.row * size + location.column : -1;
+    }
+}
@@ -0,0 +1,123 @@
+package nl.waterjeloen.quoridor;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// A set of the locations on a board of the given size, kept as one bit per cell. It only holds locations on
+// the board; it hands out the shared instances of Location.of().
+public class LocationSet extends AbstractSet<Location> {
+    private final int size;
+    private final long[] cells;
+    private int count;
+
+    public LocationSet(int size) {
+        this.size = size;
+        this.cells = new long[Bits.words(size * size)];
+        this.count = 0;
+    }
+
+    // Takes over the given bits, one per cell, without copying them.
+    LocationSet(int size, long[] cells) {
+        this.size = size;
+        this.cells = cells;
+        this.count = Bits.count(cells);
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        final int cell = cell(object);
+        return (cell >= 0) && Bits.get(cells, cell);
+    }
+
+    @Override
+    public boolean add(Location location) {
+        final int cell = cell(location);
+        if (cell < 0) {
+            throw new IllegalArgumentException(location + " is not on a board of size " + size);
+        }
+        if (Bits.get(cells, cell)) {
+            return false;
+        }
+        Bits.set(cells, cell);
+        ++count;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object object) {
+        final int cell = cell(object);
+        if ((cell < 0) || !Bits.get(cells, cell)) {
+            return false;
+        }
+        Bits.clear(cells, cell);
+        --count;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        Bits.clear(cells);
+        count = 0;
+    }
+
+    @Override
+    public Iterator<Location> iterator() {
+        return new Iterator<Location>() {
+            private int next = nextCell(0);
+            private int last = -1;
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public Location next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                last = next;
+                next = nextCell(next + 1);
+                return Location.of(last / size, last % size);
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                LocationSet.this.remove(Location.of(last / size, last % size));
+                last = -1;
+            }
+        };
+    }
+
+    private int nextCell(int from) {
+        int index = from >>> 6;
+        if (index >= cells.length) {
+            return -1;
+        }
+        long word = cells[index] & (-1L << from);
+        while (word == 0) {
+            if (++index == cells.length) {
+                return -1;
+            }
+            word = cells[index];
+        }
+        return (index << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    private int cell(Object object) {
+        if (!(object instanceof Location)) {
+            return -1;
+        }
+        final Location location = (Location) object;
+        return location.isValid(size) ? location.row * size + location.column : -1;
+    }
+}
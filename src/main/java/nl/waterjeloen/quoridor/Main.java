@@ -1,82 +1,122 @@
 package nl.waterjeloen.quoridor;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import javax.swing.Timer;
+import java.awt.EventQueue;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class Main {
     private static final int SIZE = 9;
+    private static final long THINKING_TIME = 2000;
+    private static final int ENDGAME_WALLS = 1;
+    private static final int STATUS_MILLIS = 200;
 
-    public static void main(String[] args) {
-        final Player me = new Player("me", new Location(0, SIZE / 2), location -> location.row == SIZE - 1);
-        final Player you = new Player("you", new Location(SIZE - 1, SIZE / 2), location -> location.row == 0);
-        final Board board = new Board(SIZE, me, you);
+    public static void main(String[] args) throws IOException {
+        final List<String> arguments = List.of(args);
+        final int size = option(arguments, "--size", SIZE);
+        final Board board = Board.create(size, option(arguments, "--players", 2));
+        final Player you = board.getPlayer(1);
         final GUI gui = new GUI(board);
+        final Engine engine;
+        if (arguments.contains("--computer")) {
+            final OpeningBook book = arguments.contains("--book")
+                ? new OpeningBook(Path.of(arguments.get(arguments.indexOf("--book") + 1)), 1) : null;
+            final Endgame endgame = new Endgame(ENDGAME_WALLS);
+            final AtomicReference<SearchResult> latest = new AtomicReference<>();
+            final AtomicReference<String> origin = new AtomicReference<>();
+            engine = new Engine(new AlphaBeta(THINKING_TIME), b -> {
+                final SearchResult solved = endgame.solve(b);
+                if ((solved != null) && (solved.getMove() != Move.NONE)) {
+                    origin.set("solved");
+                    latest.set(solved);
+                    return solved.getMove();
+                }
+                final int bookMove = (book != null) ? book.lookup(b) : Move.NONE;
+                if (bookMove != Move.NONE) {
+                    origin.set("book");
+                    latest.set(new SearchResult(bookMove, 0, 0, 0, 0));
+                }
+                return bookMove;
+            }, result -> {
+                origin.set(null);
+                latest.set(result);
+            });
+            you.setStrategy(engine);
+            new Timer(STATUS_MILLIS, event -> gui.showStatus(status(board, engine, latest.get(), origin.get()))).start();
+        } else {
+            engine = null;
+        }
         gui.setVisible(true);
         gui.getPanel().addListener(new BoardListener() {
-            private final List<Location> fields = new ArrayList<>();
-            private final Map<Location, Location> hwalls = new HashMap<>();
-            private final Map<Location, Location> vwalls = new HashMap<>();
+            private final Set<Location> fields = new LocationSet(board.getSize());
+            private final Map<Location, Location> hwalls = new LocationMap<>(board.getSize());
+            private final Map<Location, Location> vwalls = new LocationMap<>(board.getSize());
+            private final int[] moves = new int[board.getMoves().getMaxMoves()];
+            private boolean thinking;
 
             @Override
             public void fieldClicked(Location location) {
+                if (thinking) {
+                    return;
+                }
                 final boolean highlighted = fields.contains(location);
                 reset();
                 if (highlighted) {
                     gui.getPanel().clearHighlights();
                     board.movePlayer(location);
-                    if (board.getCurrentPlayer().hasWon()) {
+                    if (board.isFinished()) {
                         gui.showMessage("je hebt het spel gewonnen");
                         System.exit(0);
                     }
+                    playComputer();
                     return;
                 }
 
                 final Player player = board.getCurrentPlayer();
                 if (fields.isEmpty() && location.equals(player.getLocation())) {
-                    checkMove(location, Direction.DOWN, Direction.LEFT, Direction.RIGHT);
-                    checkMove(location, Direction.UP, Direction.LEFT, Direction.RIGHT);
-                    checkMove(location, Direction.LEFT, Direction.UP, Direction.DOWN);
-                    checkMove(location, Direction.RIGHT, Direction.UP, Direction.DOWN);
+                    final int count = board.getMoves().generatePawnMoves(moves, 0);
+                    for (int i = 0; i < count; ++i) {
+                        fields.add(board.location(Move.index(moves[i])));
+                    }
 
                     for (Location l : fields) {
                         gui.getPanel().highlightField(l);
                     }
                 }
-                }
+            }
 
+            private boolean canPlaceHorizontalWall(Location location) {
+                return board.isValidWall(location.row, location.column)
+                    && board.getMoves().isLegalHorizontalWall(board.wallSlot(location.row, location.column));
+            }
 
-            private void checkMove(Location location, Direction direction, Direction... andThen) {
-                if (!board.hasWall(location, direction)) {
-                    final Location next = location.go(direction);
-                    if (!board.hasPlayer(next)) {
-                        fields.add(next);
-                    } else if (!board.hasWall(next, direction)) {
-                        fields.add(next.go(direction));
-                    } else {
-                        for (Direction then : andThen) {
-                            if (!board.hasWall(next, then)) {
-                                fields.add(next.go(then));
-                            }
-                        }
-                    }
-                }
+            private boolean canPlaceVerticalWall(Location location) {
+                return board.isValidWall(location.row, location.column)
+                    && board.getMoves().isLegalVerticalWall(board.wallSlot(location.row, location.column));
             }
 
             @Override
             public void centerClicked(Location location) {
+                if (thinking) {
+                    return;
+                }
                 reset();
 
-                if (!board.hasHorizontalWall(location) && !board.hasVerticalWall(location) && (board.getCurrentPlayer().hasWalls())) {
-                    if (!board.hasHorizontalWall(location.left()) && !board.hasHorizontalWall(location.right())) {
+                final boolean horizontal = canPlaceHorizontalWall(location);
+                final boolean vertical = canPlaceVerticalWall(location);
+                if (horizontal || vertical) {
+                    if (horizontal) {
                         gui.getPanel().highlightHorizontalWall(location.right());
                         gui.getPanel().highlightHorizontalWall(location);
 
                         hwalls.put(location, location);
                         hwalls.put(location.right(), location);
                     }
-                    if (!board.hasVerticalWall(location.down()) && !board.hasVerticalWall(location.up()))  {
+                    if (vertical) {
                         gui.getPanel().highlightVerticalWall(location.down());
                         gui.getPanel().highlightVerticalWall(location);
 
@@ -90,21 +130,27 @@ public class Main {
 
             @Override
             public void horizontalWallClicked(Location location) {
+                if (thinking) {
+                    return;
+                }
                 final Location wallLocation = hwalls.get(location);
                 reset();
                 if (wallLocation != null) {
                     board.addHorizontalWall(wallLocation);
+                    playComputer();
                     return;
                 }
 
-                if (!board.hasHorizontalWall(location.left()) && !board.hasHorizontalWall(location) && (board.getCurrentPlayer().hasWalls())) {
-                    if (!board.hasVerticalWall(location) && !board.hasHorizontalWall(location.right())) {
+                final boolean right = canPlaceHorizontalWall(location);
+                final boolean left = canPlaceHorizontalWall(location.left());
+                if (right || left) {
+                    if (right) {
                         gui.getPanel().highlightCenter(location);
                         gui.getPanel().highlightHorizontalWall(location.right());
 
                         hwalls.put(location.right(), location);
                     }
-                    if (!board.hasVerticalWall(location.left()) && !board.hasHorizontalWall(location.left(2))) {
+                    if (left) {
                         gui.getPanel().highlightCenter(location.left());
                         gui.getPanel().highlightHorizontalWall(location.left());
 
@@ -116,21 +162,27 @@ public class Main {
 
             @Override
             public void verticalWallClicked(Location location) {
+                if (thinking) {
+                    return;
+                }
                 final Location wallLocation = vwalls.get(location);
                 reset();
                 if (wallLocation != null) {
                     board.addVerticalWall(wallLocation);
+                    playComputer();
                     return;
                 }
 
-                if (!board.hasVerticalWall(location.up()) && !board.hasVerticalWall(location) && (board.getCurrentPlayer().hasWalls())) {
-                    if (!board.hasVerticalWall(location.down()) && !board.hasHorizontalWall(location)) {
+                final boolean down = canPlaceVerticalWall(location);
+                final boolean up = canPlaceVerticalWall(location.up());
+                if (down || up) {
+                    if (down) {
                         gui.getPanel().highlightVerticalWall(location.down());
                         gui.getPanel().highlightCenter(location);
 
                         vwalls.put(location.down(), location);
                     }
-                    if (!board.hasVerticalWall(location.up(2)) && !board.hasHorizontalWall(location.up())) {
+                    if (up) {
                         gui.getPanel().highlightCenter(location.up());
                         gui.getPanel().highlightVerticalWall(location.up());
 
@@ -140,6 +192,35 @@ public class Main {
                 }
             }
 
+            // Shows the board and lets the engine move when it is its turn; the answer comes back on the
+            // event thread, which stays free meanwhile. On the turn of a human the engine ponders.
+            private void playComputer() {
+                gui.getPanel().show(board.snapshot());
+                if (board.isFinished()) {
+                    gui.showMessage("de computer heeft het spel gewonnen");
+                    System.exit(0);
+                }
+                if (engine == null) {
+                    return;
+                }
+                if (board.getCurrentPlayer().isHuman()) {
+                    engine.ponder(board);
+                    return;
+                }
+                thinking = true;
+                engine.think(board).whenCompleteAsync((result, error) -> {
+                    thinking = false;
+                    if (error != null) {
+                        error.printStackTrace();
+                        return;
+                    }
+                    if (result.getMove() != Move.NONE) {
+                        board.makeMove(result.getMove());
+                        playComputer();
+                    }
+                }, EventQueue::invokeLater);
+            }
+
             private void reset() {
                 gui.getPanel().clearHighlights();
                 fields.clear();
@@ -150,4 +231,27 @@ public class Main {
 
         gui.repaint();
     }
+
+    // Shows the latest search, or the move the solver or the book gave when origin names one of them.
+    private static String status(Board board, Engine engine, SearchResult result, String origin) {
+        if (result == null) {
+            return "";
+        }
+        if ("book".equals(origin)) {
+            return "book: " + Move.toString(board, result.getMove());
+        }
+        final StringBuilder text = new StringBuilder(engine.isPondering() ? "pondering: "
+            : (origin != null) ? origin + ": " : "");
+        text.append("depth ").append(result.getDepth()).append(", score ").append(result.getScore())
+            .append(", ").append(engine.getNodesPerSecond()).append(" nodes/s:");
+        for (int move : result.getLine()) {
+            text.append(' ').append(Move.toString(board, move));
+        }
+        return text.toString();
+    }
+
+    private static int option(List<String> arguments, String name, int value) {
+        final int index = arguments.indexOf(name);
+        return (index >= 0) ? Integer.parseInt(arguments.get(index + 1)) : value;
+    }
 }
@@ -0,0 +1,166 @@
+package nl.waterjeloen.quoridor;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Counters and timers for the hot paths. They are off unless the JVM runs with -Dquoridor.metrics=true,
+// and then cost nothing: ENABLED is a constant to the JIT, which drops the code it guards. When on, the
+// metrics are published over JMX and, with -Dquoridor.metrics.dump=<seconds>, printed to standard error
+// that often and once more when the JVM exits.
+public final class Metrics {
+    public static final boolean ENABLED = Boolean.getBoolean("quoridor.metrics");
+
+    static final Histogram REACHABLE_TIME = new Histogram();
+    static final LongAdder WALL_CHECKS = new LongAdder();
+    static final LongAdder MOVE_GENERATIONS = new LongAdder();
+    static final LongAdder SEARCH_NODES = new LongAdder();
+    static final Histogram SEARCH_TIME = new Histogram();
+    static final LongAdder TABLE_PROBES = new LongAdder();
+    static final LongAdder TABLE_HITS = new LongAdder();
+    static final Histogram PAINT_TIME = new Histogram();
+
+    private static final Bean BEAN = new Bean();
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(BEAN, new ObjectName("nl.waterjeloen.quoridor:type=Metrics"));
+            } catch (JMException e) {
+                System.err.println("metrics are not published over JMX: " + e.getMessage());
+            }
+            final long seconds = Long.getLong("quoridor.metrics.dump", 0);
+            if (seconds > 0) {
+                final ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    final Thread thread = new Thread(runnable, "metrics");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                dumper.scheduleAtFixedRate(() -> dump(System.err), seconds, seconds, TimeUnit.SECONDS);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> dump(System.err)));
+            }
+        }
+    }
+
+    private Metrics() {
+    }
+
+    public static MetricsMXBean get() {
+        return BEAN;
+    }
+
+    public static void dump(PrintStream out) {
+        out.print(BEAN.getReport());
+        out.flush();
+    }
+
+    private static double micros(double nanos) {
+        return nanos / 1e3;
+    }
+
+    private static final class Bean implements MetricsMXBean {
+        @Override
+        public long getReachableCalls() {
+            return REACHABLE_TIME.count();
+        }
+
+        @Override
+        public double getReachableMeanMicros() {
+            return micros(REACHABLE_TIME.mean());
+        }
+
+        @Override
+        public double getReachableP99Micros() {
+            return micros(REACHABLE_TIME.percentile(99));
+        }
+
+        @Override
+        public long getWallChecks() {
+            return WALL_CHECKS.sum();
+        }
+
+        @Override
+        public long getMoveGenerations() {
+            return MOVE_GENERATIONS.sum();
+        }
+
+        @Override
+        public long getSearches() {
+            return SEARCH_TIME.count();
+        }
+
+        @Override
+        public long getSearchNodes() {
+            return SEARCH_NODES.sum();
+        }
+
+        @Override
+        public double getSearchMeanMicros() {
+            return micros(SEARCH_TIME.mean());
+        }
+
+        @Override
+        public long getTableProbes() {
+            return TABLE_PROBES.sum();
+        }
+
+        @Override
+        public double getTableHitRate() {
+            final long probes = TABLE_PROBES.sum();
+            return (probes == 0) ? 0 : (double) TABLE_HITS.sum() / probes;
+        }
+
+        @Override
+        public long getPaints() {
+            return PAINT_TIME.count();
+        }
+
+        @Override
+        public double getPaintMeanMicros() {
+            return micros(PAINT_TIME.mean());
+        }
+
+        @Override
+        public double getPaintP99Micros() {
+            return micros(PAINT_TIME.percentile(99));
+        }
+
+        @Override
+        public String getReport() {
+            final StringBuilder report = new StringBuilder();
+            timer(report, "reachable", REACHABLE_TIME);
+            report.append(String.format(Locale.ROOT, "%-10s %d%n", "walls", getWallChecks()));
+            report.append(String.format(Locale.ROOT, "%-10s %d%n", "movegen", getMoveGenerations()));
+            timer(report, "search", SEARCH_TIME);
+            report.append(String.format(Locale.ROOT, "%-10s %d nodes%n", "", getSearchNodes()));
+            report.append(String.format(Locale.ROOT, "%-10s %d probes, %.1f%% hits%n", "table",
+                getTableProbes(), 100 * getTableHitRate()));
+            timer(report, "paint", PAINT_TIME);
+            return report.toString();
+        }
+
+        private static void timer(StringBuilder report, String name, Histogram histogram) {
+            report.append(String.format(Locale.ROOT, "%-10s %d, mean %.1f us, p50 %.1f us, p99 %.1f us, max %.1f us%n",
+                name, histogram.count(), micros(histogram.mean()), micros(histogram.percentile(50)),
+                micros(histogram.percentile(99)), micros(histogram.max())));
+        }
+
+        @Override
+        public void reset() {
+            REACHABLE_TIME.reset();
+            WALL_CHECKS.reset();
+            MOVE_GENERATIONS.reset();
+            SEARCH_NODES.reset();
+            SEARCH_TIME.reset();
+            TABLE_PROBES.reset();
+            TABLE_HITS.reset();
+            PAINT_TIME.reset();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package nl.waterjeloen.quoridor;
+
+// What Metrics publishes over JMX, as nl.waterjeloen.quoridor:type=Metrics. Times are in microseconds, and
+// the search nodes of Monte Carlo are its playouts.
+public interface MetricsMXBean {
+    long getReachableCalls();
+
+    double getReachableMeanMicros();
+
+    double getReachableP99Micros();
+
+    long getWallChecks();
+
+    long getMoveGenerations();
+
+    long getSearches();
+
+    long getSearchNodes();
+
+    double getSearchMeanMicros();
+
+    long getTableProbes();
+
+    double getTableHitRate();
+
+    long getPaints();
+
+    double getPaintMeanMicros();
+
+    double getPaintP99Micros();
+
+    String getReport();
+
+    void reset();
+}
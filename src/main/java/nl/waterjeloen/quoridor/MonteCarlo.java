@@ -0,0 +1,298 @@
+package nl.waterjeloen.quoridor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Monte Carlo tree search with UCT selection. The tree lives in parallel arrays indexed by node, with the
+// children of a node in one contiguous block. Threads count a visit on the way down (a virtual loss) and
+// only add the win once the playout is done, which steers the other threads to different lines meanwhile.
+// A win is worth a little less for every ply it takes, so the engine does not dawdle in a won race.
+public class MonteCarlo implements Strategy {
+    private static final int NODE_BYTES = 28;
+    private static final int REWARD = 1024;
+    private static final int MAX_PLAYOUT = 120;
+    private static final int WALL_PERCENT = 20;
+    private static final int WALL_TRIES = 4;
+    private static final double EXPLORATION = 1.4;
+
+    private static final int LEAF = 0;
+    private static final int EXPANDING = 1;
+    private static final int EXPANDED = 2;
+
+    private final long budget;
+    private final long maxPlayouts;
+    private final int capacity;
+    private final int[] moves;
+    private final int[] firstChild;
+    private final int[] childCount;
+    private final AtomicIntegerArray visits;
+    private final AtomicLongArray wins;
+    private final AtomicIntegerArray states;
+    private final AtomicInteger nodeCount;
+    private final AtomicInteger maxDepth;
+    private final LongAdder playouts;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<Worker> workers;
+
+    private Board root;
+    private int generation;
+    private long deadline;
+
+    public MonteCarlo(int threads, long millis) {
+        this(threads, millis, Long.MAX_VALUE, 64);
+    }
+
+    public MonteCarlo(int threads, long millis, long maxPlayouts, int megabytes) {
+        this.budget = millis * 1_000_000;
+        this.maxPlayouts = maxPlayouts;
+        this.capacity = (int) Math.min(((long) megabytes << 20) / NODE_BYTES, Integer.MAX_VALUE - 1024);
+        this.moves = new int[capacity];
+        this.firstChild = new int[capacity];
+        this.childCount = new int[capacity];
+        this.visits = new AtomicIntegerArray(capacity);
+        this.wins = new AtomicLongArray(capacity);
+        this.states = new AtomicIntegerArray(capacity);
+        this.nodeCount = new AtomicInteger();
+        this.maxDepth = new AtomicInteger();
+        this.playouts = new LongAdder();
+        this.pool = new ForkJoinPool(threads);
+        this.workers = ThreadLocal.withInitial(Worker::new);
+    }
+
+    @Override
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    @Override
+    public int selectMove(Board board) {
+        return search(board).getMove();
+    }
+
+    public synchronized SearchResult search(Board board) {
+        final long start = System.nanoTime();
+        root = board;
+        ++generation;
+        deadline = start + budget;
+        playouts.reset();
+        maxDepth.set(0);
+        nodeCount.set(1);
+        reset(0);
+
+        final Worker worker = worker();
+        states.set(0, EXPANDING);
+        expand(0, worker.board, worker.buffer);
+
+        final List<RecursiveAction> tasks = new ArrayList<>();
+        for (int i = 0; i < pool.getParallelism(); ++i) {
+            tasks.add(new PlayoutTask());
+        }
+        for (RecursiveAction task : tasks) {
+            pool.execute(task);
+        }
+        for (RecursiveAction task : tasks) {
+            task.join();
+        }
+
+        int bestMove = Move.NONE;
+        int bestVisits = -1;
+        long bestWins = 0;
+        if (states.get(0) == EXPANDED) {
+            for (int child = firstChild[0]; child < firstChild[0] + childCount[0]; ++child) {
+                if (visits.get(child) > bestVisits) {
+                    bestVisits = visits.get(child);
+                    bestWins = wins.get(child);
+                    bestMove = moves[child];
+                }
+            }
+        }
+        final int score = (bestVisits > 0) ? (int) (1000 * bestWins / ((long) REWARD * bestVisits)) : 0;
+        if (Metrics.ENABLED) {
+            Metrics.SEARCH_NODES.add(playouts.sum());
+            Metrics.SEARCH_TIME.record(System.nanoTime() - start);
+        }
+        return new SearchResult(bestMove, score, maxDepth.get(), playouts.sum(), System.nanoTime() - start);
+    }
+
+    public int getNodeCount() {
+        return Math.min(nodeCount.get(), capacity);
+    }
+
+    private void iterate(Worker worker) {
+        final Board board = worker.board;
+        int node = 0;
+        int length = 0;
+        visits.incrementAndGet(0);
+        while ((states.get(node) == EXPANDED) && !board.isFinished() && (length < worker.path.length)) {
+            final int child = select(node);
+            worker.movers[length] = board.getCurrentPlayerIndex();
+            worker.path[length++] = child;
+            visits.incrementAndGet(child);
+            board.makeMove(moves[child]);
+            node = child;
+        }
+        if (!board.isFinished() && (visits.get(node) > 1) && states.compareAndSet(node, LEAF, EXPANDING)) {
+            expand(node, board, worker.buffer);
+        }
+        if (length > maxDepth.get()) {
+            maxDepth.accumulateAndGet(length, Math::max);
+        }
+
+        final int winner = playout(board, worker);
+        final int reward = REWARD - Math.min(REWARD / 2, length + worker.plies);
+        for (int i = 0; i < length; ++i) {
+            if (worker.movers[i] == winner) {
+                wins.addAndGet(worker.path[i], reward);
+            }
+        }
+        for (int i = 0; i < length; ++i) {
+            board.unmakeMove();
+        }
+        playouts.increment();
+    }
+
+    private int select(int node) {
+        final double logVisits = Math.log(Math.max(1, visits.get(node)));
+        int best = firstChild[node];
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int child = firstChild[node]; child < firstChild[node] + childCount[node]; ++child) {
+            final int childVisits = visits.get(child);
+            if (childVisits == 0) {
+                return child;
+            }
+            final double value = (double) wins.get(child) / ((double) REWARD * childVisits)
+                + EXPLORATION * Math.sqrt(logVisits / childVisits);
+            if (value > bestValue) {
+                bestValue = value;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    // Adds the children of a node the calling thread has claimed. The space is only reserved when it fits,
+    // so the count never passes the capacity. When the tree is full the node stays claimed, so it is never
+    // expanded and keeps serving as a leaf.
+    private void expand(int node, Board board, int[] buffer) {
+        final int count = board.getMoves().generate(buffer);
+        if (count == 0) {
+            return;
+        }
+        int first = nodeCount.get();
+        while (true) {
+            if ((long) first + count > capacity) {
+                return;
+            }
+            if (nodeCount.compareAndSet(first, first + count)) {
+                break;
+            }
+            first = nodeCount.get();
+        }
+        for (int i = 0; i < count; ++i) {
+            reset(first + i);
+            moves[first + i] = buffer[i];
+        }
+        firstChild[node] = first;
+        childCount[node] = count;
+        states.set(node, EXPANDED);
+    }
+
+    private void reset(int node) {
+        childCount[node] = 0;
+        visits.set(node, 0);
+        wins.set(node, 0);
+        states.set(node, LEAF);
+    }
+
+    // Plays on with a light policy until someone wins: mostly a step along the shortest path, sometimes a
+    // random wall. Long games are cut off and given to the player with the shortest path.
+    private int playout(Board board, Worker worker) {
+        final SplittableRandom random = worker.random;
+        final PathFinder paths = board.getPaths();
+        final MoveGenerator generator = board.getMoves();
+        final int start = board.getPly();
+        while (!board.isFinished() && (board.getPly() - start < MAX_PLAYOUT)) {
+            final int player = board.getCurrentPlayerIndex();
+            int move = Move.NONE;
+            if (board.getCurrentPlayer().hasWalls() && (random.nextInt(100) < WALL_PERCENT)) {
+                for (int i = 0; (i < WALL_TRIES) && (move == Move.NONE); ++i) {
+                    final int slot = random.nextInt(board.getWallSlotCount());
+                    final int wall = random.nextBoolean() ? Move.horizontalWall(slot) : Move.verticalWall(slot);
+                    if (generator.isLegal(wall)) {
+                        move = wall;
+                    }
+                }
+            }
+            if (move == Move.NONE) {
+                final int count = generator.generatePawnMoves(worker.buffer, 0);
+                int best = PathFinder.UNREACHABLE;
+                int ties = 0;
+                for (int i = 0; i < count; ++i) {
+                    final int distance = paths.distanceToGoal(player, Move.index(worker.buffer[i]));
+                    if (distance < best) {
+                        best = distance;
+                        move = worker.buffer[i];
+                        ties = 1;
+                    } else if ((distance == best) && (random.nextInt(++ties) == 0)) {
+                        move = worker.buffer[i];
+                    }
+                }
+            }
+            if (move == Move.NONE) {
+                break;
+            }
+            board.makeMove(move);
+        }
+
+        int winner = board.getCurrentPlayerIndex();
+        for (int player = 0; (player < board.getPlayerCount()) && !board.isFinished(); ++player) {
+            if (paths.distanceToGoal(player) < paths.distanceToGoal(winner)) {
+                winner = player;
+            }
+        }
+        worker.plies = board.getPly() - start;
+        while (board.getPly() > start) {
+            board.unmakeMove();
+        }
+        return winner;
+    }
+
+    private Worker worker() {
+        final Worker worker = workers.get();
+        if (worker.generation != generation) {
+            worker.board = root.copy();
+            worker.generation = generation;
+            if (worker.buffer.length < worker.board.getMoves().getMaxMoves()) {
+                worker.buffer = new int[worker.board.getMoves().getMaxMoves()];
+            }
+        }
+        return worker;
+    }
+
+    private static class Worker {
+        private final SplittableRandom random = new SplittableRandom();
+        private final int[] path = new int[1024];
+        private final int[] movers = new int[1024];
+        private int[] buffer = new int[0];
+        private Board board;
+        private int generation;
+        private int plies;
+    }
+
+    private class PlayoutTask extends RecursiveAction {
+        @Override
+        protected void compute() {
+            final Worker worker = worker();
+            while ((System.nanoTime() < deadline) && (playouts.sum() < maxPlayouts)) {
+                iterate(worker);
+            }
+        }
+    }
+}
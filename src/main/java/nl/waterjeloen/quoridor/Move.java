@@ -0,0 +1,67 @@
+package nl.waterjeloen.quoridor;
+
+public final class Move {
+    public static final int NONE = -1;
+
+    public static final int PAWN = 0;
+    public static final int HORIZONTAL_WALL = 1;
+    public static final int VERTICAL_WALL = 2;
+
+    private static final int TYPE_SHIFT = 16;
+    private static final int INDEX_MASK = (1 << TYPE_SHIFT) - 1;
+
+    private Move() {
+    }
+
+    public static int pawn(int cell) {
+        return (PAWN << TYPE_SHIFT) | cell;
+    }
+
+    public static int horizontalWall(int slot) {
+        return (HORIZONTAL_WALL << TYPE_SHIFT) | slot;
+    }
+
+    public static int verticalWall(int slot) {
+        return (VERTICAL_WALL << TYPE_SHIFT) | slot;
+    }
+
+    public static int type(int move) {
+        return move >>> TYPE_SHIFT;
+    }
+
+    public static int index(int move) {
+        return move & INDEX_MASK;
+    }
+
+    public static boolean isPawn(int move) {
+        return type(move) == PAWN;
+    }
+
+    public static boolean isWall(int move) {
+        return type(move) != PAWN;
+    }
+
+    // Returns the same move on the board mirrored in its vertical axis.
+    public static int mirror(Board board, int move) {
+        if (move == NONE) {
+            return NONE;
+        }
+        final int index = index(move);
+        return (type(move) << TYPE_SHIFT) | (isPawn(move) ? board.mirrorCell(index) : board.mirrorSlot(index));
+    }
+
+    public static String toString(Board board, int move) {
+        if (move == NONE) {
+            return "none";
+        }
+        final int index = index(move);
+        switch (type(move)) {
+            case PAWN:
+                return board.location(index).toString();
+            case HORIZONTAL_WALL:
+                return "h(" + board.wallRow(index) + "," + board.wallColumn(index) + ")";
+            default:
+                return "v(" + board.wallRow(index) + "," + board.wallColumn(index) + ")";
+        }
+    }
+}
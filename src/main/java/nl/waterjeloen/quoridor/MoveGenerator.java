@@ -0,0 +1,172 @@
+package nl.waterjeloen.quoridor;
+
+public class MoveGenerator {
+    private final Board board;
+    private final int wallSize;
+    private final int[] pawnMoves;
+    private final long[] horizontalFree;
+    private final long[] verticalFree;
+
+    MoveGenerator(Board board, int playerCount) {
+        this.board = board;
+        this.wallSize = board.getSize() - 1;
+        this.pawnMoves = new int[4 * playerCount];
+        this.horizontalFree = new long[Bits.words(wallSize * wallSize)];
+        this.verticalFree = new long[Bits.words(wallSize * wallSize)];
+    }
+
+    public int getMaxMoves() {
+        return 4 * board.getPlayerCount() + 2 * wallSize * wallSize;
+    }
+
+    public int generate(int[] moves) {
+        if (Metrics.ENABLED) {
+            Metrics.MOVE_GENERATIONS.increment();
+        }
+        final int count = generatePawnMoves(moves, 0);
+        return generateWalls(moves, count);
+    }
+
+    public int generatePawnMoves(int[] moves, int offset) {
+        if (board.isFinished()) {
+            return offset;
+        }
+        return generatePawnMoves(board.getPlayerCell(board.getCurrentPlayerIndex()), -1, moves, offset);
+    }
+
+    // Generates the moves of a pawn on one cell. When other is a cell, the only other pawn stands there,
+    // whatever the pawns on the board itself; when it is negative, the pawns on the board are used. Two
+    // pawns next to this one can both lead to the same diagonal cell, which is only generated once.
+    int generatePawnMoves(int from, int other, int[] moves, int offset) {
+        int count = offset;
+        for (Direction direction : Direction.VALUES) {
+            if (board.canMove(from, direction)) {
+                final int next = board.neighbor(from, direction);
+                if (isFree(next, other)) {
+                    moves[count++] = Move.pawn(next);
+                } else if (!board.hasWall(next, direction)) {
+                    if (board.canMove(next, direction) && isFree(board.neighbor(next, direction), other)) {
+                        moves[count++] = Move.pawn(board.neighbor(next, direction));
+                    }
+                } else {
+                    for (Direction then : direction.perpendicular()) {
+                        final int side = board.neighbor(next, then);
+                        if (board.canMove(next, then) && isFree(side, other) && !contains(moves, offset, count, side)) {
+                            moves[count++] = Move.pawn(side);
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private static boolean contains(int[] moves, int from, int to, int cell) {
+        for (int i = from; i < to; ++i) {
+            if (moves[i] == Move.pawn(cell)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isFree(int cell, int other) {
+        return (other < 0) ? !board.hasPlayer(cell) : (cell != other);
+    }
+
+    public int generateWalls(int[] moves, int offset) {
+        int count = offset;
+        if (board.isFinished() || !board.getCurrentPlayer().hasWalls()) {
+            return count;
+        }
+
+        board.fitting(horizontalFree, verticalFree);
+        for (int i = 0; i < horizontalFree.length; ++i) {
+            long free = horizontalFree[i] | verticalFree[i];
+            while (free != 0) {
+                final int slot = (i << 6) + Long.numberOfTrailingZeros(free);
+                free &= free - 1;
+                if (Bits.get(horizontalFree, slot) && keepsPaths(slot, true)) {
+                    moves[count++] = Move.horizontalWall(slot);
+                }
+                if (Bits.get(verticalFree, slot) && keepsPaths(slot, false)) {
+                    moves[count++] = Move.verticalWall(slot);
+                }
+            }
+        }
+        return count;
+    }
+
+    public boolean isLegal(int move) {
+        final int index = Move.index(move);
+        switch (Move.type(move)) {
+            case Move.PAWN:
+                return isLegalPawnMove(index);
+            case Move.HORIZONTAL_WALL:
+                return isLegalHorizontalWall(index);
+            case Move.VERTICAL_WALL:
+                return isLegalVerticalWall(index);
+            default:
+                return false;
+        }
+    }
+
+    public boolean isLegalPawnMove(int cell) {
+        final int count = generatePawnMoves(pawnMoves, 0);
+        for (int i = 0; i < count; ++i) {
+            if (Move.index(pawnMoves[i]) == cell) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isLegalHorizontalWall(int slot) {
+        if (board.isFinished() || !board.getCurrentPlayer().hasWalls() || !board.fits(Move.horizontalWall(slot))) {
+            return false;
+        }
+        return keepsPaths(slot, true);
+    }
+
+    public boolean isLegalVerticalWall(int slot) {
+        if (board.isFinished() || !board.getCurrentPlayer().hasWalls() || !board.fits(Move.verticalWall(slot))) {
+            return false;
+        }
+        return keepsPaths(slot, false);
+    }
+
+    // Tells whether a wall fits between the walls already on the board, without looking at the paths.
+    boolean fits(int move) {
+        return board.fits(move);
+    }
+
+    private boolean keepsPaths(int slot, boolean horizontal) {
+        if (Metrics.ENABLED) {
+            Metrics.WALL_CHECKS.increment();
+        }
+        final int cut = 2 * slot + (horizontal ? 0 : 1);
+        final int row = slot / wallSize;
+        final int column = slot % wallSize;
+
+        // A wall that touches other walls or the border in fewer than two points cannot close off a region.
+        final WallImpact impact = board.getWallImpact();
+        int touches = 0;
+        for (int i = 0; i < 3; ++i) {
+            if (horizontal ? impact.touches(row + 1, column + i) : impact.touches(row + i, column + 1)) {
+                ++touches;
+            }
+        }
+        if (touches < 2) {
+            return true;
+        }
+
+        final Geometry geometry = board.getGeometry();
+        for (int player = 0; player < board.getPlayerCount(); ++player) {
+            if (Bits.get(impact.getCuts(player), cut) && !board.getPaths().hasPathToGoal(player,
+                    geometry.wallCell(cut, 0), geometry.wallCell(cut, 1), geometry.wallCell(cut, 2), geometry.wallCell(cut, 3))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
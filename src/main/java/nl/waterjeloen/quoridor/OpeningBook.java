@@ -0,0 +1,205 @@
+package nl.waterjeloen.quoridor;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Moves played in the opening of recorded games, with how well they did. In a two-player game a position
+// and its mirror image share one key, the smaller of both hashes; the moves of a mirrored position are
+// stored mirrored too. With more players the mirror image swaps the goals of the side players, so there a
+// position is only its own hash.
+// The book file is a header followed by entries sorted by key, so a lookup is a binary search in the
+// mapped file and opening a book reads nothing but the header:
+//
+//   header: magic (u32), version (u8), board size (u8), players (u8), reserved (u8), entry count (u32)
+//   entry:  key (u64), move (u32), games (u32), points (u32, two for a win and one for a draw)
+public class OpeningBook implements Closeable {
+    private static final int MAGIC = 0x51424B31;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+    private static final int ENTRY_BYTES = 20;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer entries;
+    private final int size;
+    private final int playerCount;
+    private final int count;
+    private final int minGames;
+
+    public OpeningBook(Path path, int minGames) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.entries = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        if ((channel.size() < HEADER_BYTES) || (entries.getInt(0) != MAGIC) || (entries.get(4) != VERSION)) {
+            throw new IOException(path + " is not an opening book");
+        }
+        this.size = entries.get(5);
+        this.playerCount = Math.max(2, entries.get(6));
+        this.count = entries.getInt(8);
+        this.minGames = minGames;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int plies = 12;
+        Path book = null;
+        final List<Path> archives = new ArrayList<>();
+        for (int i = 0; i < args.length; ++i) {
+            if (args[i].equals("--plies")) {
+                plies = Integer.parseInt(args[++i]);
+            } else if (book == null) {
+                book = Path.of(args[i]);
+            } else {
+                archives.add(Path.of(args[i]));
+            }
+        }
+        if ((book == null) || archives.isEmpty()) {
+            System.err.println("usage: OpeningBook [--plies 12] book archive...");
+            System.exit(1);
+        }
+        final long start = System.nanoTime();
+        final int entries = build(book, archives, plies);
+        System.out.println(entries + " entries in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    // Collects the first plies of every game in the archives and writes them as a book.
+    public static int build(Path book, List<Path> archives, int plies) throws IOException {
+        final Map<Long, Map<Integer, int[]>> positions = new HashMap<>();
+        int size = 0;
+        int playerCount = 0;
+        for (Path archive : archives) {
+            try (GameReader reader = new GameReader(archive)) {
+                if ((size != 0) && ((reader.getSize() != size) || (reader.getPlayerCount() != playerCount))) {
+                    throw new IOException(archive + " is played by " + reader.getPlayerCount()
+                        + " players on a board of size " + reader.getSize());
+                }
+                size = reader.getSize();
+                playerCount = reader.getPlayerCount();
+                int[] moves = new int[0];
+                for (int game = 0; game < reader.getGameCount(); ++game) {
+                    final int length = reader.getPlies(game);
+                    if (moves.length < length) {
+                        moves = new int[length];
+                    }
+                    reader.read(game, moves);
+                    final int winner = reader.getWinner(game);
+                    final Board board = Board.create(size, playerCount);
+                    for (int ply = 0; (ply < Math.min(plies, length)) && !board.isFinished(); ++ply) {
+                        final long hash = board.getHash();
+                        final long mirror = mirrorHash(board);
+                        final int move = (mirror < hash) ? Move.mirror(board, moves[ply]) : moves[ply];
+                        final int[] stats = positions.computeIfAbsent(Math.min(hash, mirror), key -> new HashMap<>())
+                            .computeIfAbsent(move, key -> new int[2]);
+                        ++stats[0];
+                        stats[1] += (winner < 0) ? 1 : (winner == board.getCurrentPlayerIndex()) ? 2 : 0;
+                        board.makeMove(moves[ply]);
+                    }
+                }
+            }
+        }
+
+        final List<Long> keys = new ArrayList<>(positions.keySet());
+        keys.sort(Long::compare);
+        int entries = 0;
+        for (Map<Integer, int[]> moves : positions.values()) {
+            entries += moves.size();
+        }
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(book), 1 << 16))) {
+            output.writeInt(MAGIC);
+            output.writeByte(VERSION);
+            output.writeByte(size);
+            output.writeByte(playerCount);
+            output.writeByte(0);
+            output.writeInt(entries);
+            for (long key : keys) {
+                for (Map.Entry<Integer, int[]> entry : positions.get(key).entrySet()) {
+                    output.writeLong(key);
+                    output.writeInt(entry.getKey());
+                    output.writeInt(entry.getValue()[0]);
+                    output.writeInt(entry.getValue()[1]);
+                }
+            }
+        }
+        return entries;
+    }
+
+    public int getEntryCount() {
+        return count;
+    }
+
+    // Returns the book move with the best expected score that was played at least minGames times, or
+    // Move.NONE when the position is not in the book.
+    public int lookup(Board board) {
+        if ((board.getSize() != size) || (board.getPlayerCount() != playerCount)) {
+            return Move.NONE;
+        }
+        final long hash = board.getHash();
+        final long mirror = mirrorHash(board);
+        final long key = Math.min(hash, mirror);
+
+        int best = Move.NONE;
+        double bestScore = -1;
+        for (int entry = first(key); (entry < count) && (key(entry) == key); ++entry) {
+            final int offset = HEADER_BYTES + entry * ENTRY_BYTES;
+            final int games = entries.getInt(offset + 12);
+            final double score = (entries.getInt(offset + 16) + 1.0) / (2.0 * games + 2.0);
+            final int move = (mirror < hash) ? Move.mirror(board, entries.getInt(offset + 8)) : entries.getInt(offset + 8);
+            if ((games >= minGames) && (score > bestScore) && board.getMoves().isLegal(move)) {
+                best = move;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    // Plays from the book while it can, and leaves the rest to the engine.
+    public Strategy with(Strategy engine) {
+        return new Strategy() {
+            @Override
+            public int selectMove(Board board) {
+                final int move = lookup(board);
+                return (move != Move.NONE) ? move : engine.selectMove(board);
+            }
+
+            @Override
+            public void shutdown() {
+                engine.shutdown();
+            }
+        };
+    }
+
+    private static long mirrorHash(Board board) {
+        return (board.getPlayerCount() == 2) ? board.computeMirrorHash() : board.getHash();
+    }
+
+    private int first(long key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (key(middle) < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long key(int entry) {
+        return entries.getLong(HEADER_BYTES + entry * ENTRY_BYTES);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
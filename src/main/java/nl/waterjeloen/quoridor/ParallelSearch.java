@@ -0,0 +1,361 @@
+package nl.waterjeloen.quoridor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Searches every iteration on a fork-join pool, splitting the nodes of the principal variation: at the
+// root and at every node below it along the first (best ordered) moves, the first move is searched alone
+// to establish a bound, then its younger brothers are searched in parallel against the best score so far.
+// The first move is split the same way in turn, until too little depth is left to be worth it. Every
+// worker thread plays on copies of the board of its own, one per task it is running, as a thread that
+// waits for tasks runs others meanwhile; all share one table.
+public class ParallelSearch implements Strategy {
+    private static final int SPLIT_DEPTH = 3;
+
+    private final long budget;
+    private final int maxDepth;
+    private final TranspositionTable table;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<Worker> workers;
+
+    private final AtomicLong best;
+    private final LongAdder nodes;
+    private volatile boolean aborted;
+    private Board root;
+    private int rootPly;
+    private int generation;
+    private long deadline;
+    private int[] rootMoves;
+    private int[] rootScores;
+    private int rootCount;
+
+    public ParallelSearch(int threads, long millis) {
+        this(threads, millis, AlphaBeta.MAX_PLY - 1, new TranspositionTable(256, TranspositionTable.Replacement.TWO_TIER));
+    }
+
+    public ParallelSearch(int threads, long millis, int maxDepth, TranspositionTable table) {
+        this.budget = millis * 1_000_000;
+        this.maxDepth = maxDepth;
+        this.table = table;
+        this.pool = new ForkJoinPool(threads);
+        this.workers = ThreadLocal.withInitial(() -> new Worker(new AlphaBeta(millis, maxDepth, table)));
+        this.best = new AtomicLong();
+        this.nodes = new LongAdder();
+    }
+
+    public int getThreads() {
+        return pool.getParallelism();
+    }
+
+    @Override
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    @Override
+    public int selectMove(Board board) {
+        return search(board).getMove();
+    }
+
+    public synchronized SearchResult search(Board board) {
+        final long start = System.nanoTime();
+        root = board;
+        rootPly = board.getPly();
+        ++generation;
+        nodes.reset();
+        table.newSearch();
+        deadline = Long.MAX_VALUE;
+        aborted = false;
+
+        final Worker worker = worker();
+        worker.engine.begin(worker.acquire(new int[0]), deadline);
+        if ((rootMoves == null) || (rootMoves.length < board.getMoves().getMaxMoves())) {
+            rootMoves = new int[board.getMoves().getMaxMoves()];
+            rootScores = new int[rootMoves.length];
+        }
+        rootCount = worker.engine.rootMoves(Move.NONE, rootMoves);
+        worker.release();
+
+        int bestMove = Move.NONE;
+        int bestScore = 0;
+        int depth = 0;
+        while ((depth < maxDepth) && (rootCount > 0)) {
+            pool.invoke(new RootTask(depth + 1));
+            if (aborted) {
+                break;
+            }
+            ++depth;
+            deadline = start + budget;
+            final long packed = best.get();
+            bestScore = score(packed);
+            bestMove = rootMoves[index(packed)];
+            sortRootMoves(index(packed));
+            if (Math.abs(bestScore) >= AlphaBeta.WIN - AlphaBeta.MAX_PLY) {
+                break;
+            }
+        }
+        if (Metrics.ENABLED) {
+            Metrics.SEARCH_NODES.add(nodes.sum());
+            Metrics.SEARCH_TIME.record(System.nanoTime() - start);
+        }
+        return new SearchResult(bestMove, bestScore, depth, nodes.sum(), System.nanoTime() - start);
+    }
+
+    private void searchRootMove(int index, int depth) {
+        if (aborted) {
+            return;
+        }
+        final Worker worker = worker();
+        final AlphaBeta engine = worker.engine;
+        engine.begin(worker.acquire(new int[0]), deadline);
+        final long before = engine.getNodes();
+        final int score = engine.searchMove(rootMoves[index], depth, score(best.get()));
+        nodes.add(engine.getNodes() - before);
+        worker.release();
+        if (engine.isAborted()) {
+            aborted = true;
+            return;
+        }
+        record(index, score);
+    }
+
+    private void record(int index, int score) {
+        rootScores[index] = score;
+        long current = best.get();
+        while ((score > score(current)) && !best.compareAndSet(current, pack(score, index))) {
+            current = best.get();
+        }
+    }
+
+    // Puts the best move first and the others in order of their scores of the last iteration.
+    private void sortRootMoves(int bestIndex) {
+        rootScores[bestIndex] = AlphaBeta.INFINITY;
+        for (int i = 1; i < rootCount; ++i) {
+            final int move = rootMoves[i];
+            final int score = rootScores[i];
+            int j = i - 1;
+            while ((j >= 0) && (rootScores[j] < score)) {
+                rootMoves[j + 1] = rootMoves[j];
+                rootScores[j + 1] = rootScores[j];
+                --j;
+            }
+            rootMoves[j + 1] = move;
+            rootScores[j + 1] = score;
+        }
+    }
+
+    private Worker worker() {
+        final Worker worker = workers.get();
+        if (worker.generation != generation) {
+            worker.boards.clear();
+            worker.generation = generation;
+        }
+        return worker;
+    }
+
+    // Searches a position by one thread, ply moves below the root, on a board the worker already holds.
+    private int searchNode(Worker worker, Board board, int depth, int alpha, int beta, int ply) {
+        final AlphaBeta engine = worker.engine;
+        engine.begin(board, deadline);
+        final long before = engine.getNodes();
+        final int score = engine.searchNode(depth, alpha, beta, ply);
+        nodes.add(engine.getNodes() - before);
+        if (engine.isAborted()) {
+            aborted = true;
+        }
+        return score;
+    }
+
+    private static int[] append(int[] line, int move) {
+        final int[] result = Arrays.copyOf(line, line.length + 1);
+        result[line.length] = move;
+        return result;
+    }
+
+    private static long pack(int score, int index) {
+        return ((long) score << 32) | (index & 0xFFFFFFFFL);
+    }
+
+    private static int score(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    private static int index(long packed) {
+        return (int) packed;
+    }
+
+    private class Worker {
+        private final AlphaBeta engine;
+        private final List<Board> boards = new ArrayList<>();
+        private int used;
+        private int generation;
+
+        private Worker(AlphaBeta engine) {
+            this.engine = engine;
+        }
+
+        // Takes a board that no task of this thread is using and plays the line from the root on it.
+        private Board acquire(int[] line) {
+            if (used == boards.size()) {
+                boards.add(root.copy());
+            }
+            final Board board = boards.get(used++);
+            while (board.getPly() > rootPly) {
+                board.unmakeMove();
+            }
+            for (int move : line) {
+                board.makeMove(move);
+            }
+            return board;
+        }
+
+        private void release() {
+            --used;
+        }
+    }
+
+    private class RootTask extends RecursiveAction {
+        private final int depth;
+
+        private RootTask(int depth) {
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            best.set(pack(-AlphaBeta.INFINITY, 0));
+            final int score = -new NodeTask(new int[] { rootMoves[0] }, depth - 1, -AlphaBeta.INFINITY,
+                AlphaBeta.INFINITY).compute();
+            if (aborted) {
+                return;
+            }
+            record(0, score);
+
+            final List<MoveTask> tasks = new ArrayList<>();
+            for (int i = 1; i < rootCount; ++i) {
+                tasks.add(new MoveTask(i, depth));
+            }
+            invokeAll(tasks);
+        }
+    }
+
+    private class MoveTask extends RecursiveAction {
+        private final int index;
+        private final int depth;
+
+        private MoveTask(int index, int depth) {
+            this.index = index;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            searchRootMove(index, depth);
+        }
+    }
+
+    // Searches the node at the end of a line of the principal variation, for the player to move there. Its
+    // first move is split again, the others are searched in parallel by one thread each.
+    private class NodeTask extends RecursiveTask<Integer> {
+        private final int[] line;
+        private final int depth;
+        private final int alpha;
+        private final int beta;
+
+        private NodeTask(int[] line, int depth, int alpha, int beta) {
+            this.line = line;
+            this.depth = depth;
+            this.alpha = alpha;
+            this.beta = beta;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (aborted) {
+                return 0;
+            }
+            final Worker worker = worker();
+            final Board board = worker.acquire(line);
+            try {
+                if ((depth < SPLIT_DEPTH) || board.isFinished()) {
+                    return searchNode(worker, board, depth, alpha, beta, line.length);
+                }
+                worker.engine.begin(board, deadline);
+                final int[] moves = new int[board.getMoves().getMaxMoves()];
+                final int count = worker.engine.nodeMoves(line.length, moves);
+                if (count == 0) {
+                    return searchNode(worker, board, depth, alpha, beta, line.length);
+                }
+
+                int score = -new NodeTask(append(line, moves[0]), depth - 1, -beta, -alpha).compute();
+                int bestMove = moves[0];
+                if (aborted) {
+                    return 0;
+                }
+                final AtomicInteger bound = new AtomicInteger(Math.max(alpha, score));
+                if (bound.get() < beta) {
+                    final List<BrotherTask> tasks = new ArrayList<>();
+                    for (int i = 1; i < count; ++i) {
+                        tasks.add(new BrotherTask(append(line, moves[i]), depth - 1, bound, beta));
+                    }
+                    invokeAll(tasks);
+                    if (aborted) {
+                        return 0;
+                    }
+                    for (BrotherTask task : tasks) {
+                        if (task.score > score) {
+                            score = task.score;
+                            bestMove = task.line[line.length];
+                        }
+                    }
+                }
+                worker.engine.begin(board, deadline);
+                worker.engine.storeNode(bestMove, score, depth, alpha, beta, line.length);
+                return score;
+            } finally {
+                worker.release();
+            }
+        }
+    }
+
+    // Searches a younger brother on the principal variation by one thread, against the best score of its
+    // brothers so far, which it raises when it does better. It is skipped once a brother got a cutoff.
+    private class BrotherTask extends RecursiveAction {
+        private final int[] line;
+        private final int depth;
+        private final AtomicInteger alpha;
+        private final int beta;
+        private int score = -AlphaBeta.INFINITY;
+
+        private BrotherTask(int[] line, int depth, AtomicInteger alpha, int beta) {
+            this.line = line;
+            this.depth = depth;
+            this.alpha = alpha;
+            this.beta = beta;
+        }
+
+        @Override
+        protected void compute() {
+            if (aborted || (alpha.get() >= beta)) {
+                return;
+            }
+            final Worker worker = worker();
+            final Board board = worker.acquire(line);
+            try {
+                score = -searchNode(worker, board, depth, -beta, -alpha.get(), line.length);
+            } finally {
+                worker.release();
+            }
+            if (!aborted) {
+                alpha.accumulateAndGet(score, Math::max);
+            }
+        }
+    }
+}
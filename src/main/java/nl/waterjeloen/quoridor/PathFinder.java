@@ -0,0 +1,418 @@
+package nl.waterjeloen.quoridor;
+
+import java.util.Arrays;
+
+public class PathFinder {
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final Board board;
+    private final int cellCount;
+    private final int[] queue;
+    private final int[] affected;
+    private final long[] visited;
+    private final long[] marked;
+    private final int[][] distances;
+    private final boolean[] valid;
+    private final int[] seen;
+    private final int[] steps;
+    private final int[] bucket;
+    private final int[] entryCell;
+    private final int[] entryNext;
+    private int generation;
+
+    PathFinder(Board board, int playerCount) {
+        this.board = board;
+        this.cellCount = board.getSize() * board.getSize();
+        this.queue = new int[cellCount];
+        this.affected = new int[cellCount];
+        this.visited = new long[Bits.words(cellCount)];
+        this.marked = new long[Bits.words(cellCount)];
+        this.distances = new int[playerCount][cellCount];
+        this.valid = new boolean[playerCount];
+        this.seen = new int[cellCount];
+        this.steps = new int[cellCount];
+        this.bucket = new int[2 * cellCount + 1];
+        this.entryCell = new int[4 * cellCount + 1];
+        this.entryNext = new int[4 * cellCount + 1];
+        Arrays.fill(bucket, -1);
+    }
+
+    public int fillReachable(int cell, long[] result) {
+        Bits.clear(result);
+        Bits.set(result, cell);
+        queue[0] = cell;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            final int current = queue[head++];
+            for (Direction direction : Direction.VALUES) {
+                if (board.canMove(current, direction)) {
+                    final int next = board.neighbor(current, direction);
+                    if (!Bits.get(result, next)) {
+                        Bits.set(result, next);
+                        queue[tail++] = next;
+                    }
+                }
+            }
+        }
+        return tail;
+    }
+
+    public boolean isReachable(int from, int to) {
+        if (from == to) {
+            return true;
+        }
+        Bits.clear(visited);
+        Bits.set(visited, from);
+        queue[0] = from;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            final int current = queue[head++];
+            for (Direction direction : Direction.VALUES) {
+                if (board.canMove(current, direction)) {
+                    final int next = board.neighbor(current, direction);
+                    if (next == to) {
+                        return true;
+                    }
+                    if (!Bits.get(visited, next)) {
+                        Bits.set(visited, next);
+                        queue[tail++] = next;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    public int distanceToGoal(int player) {
+        return distanceToGoal(player, board.getPlayerCell(player));
+    }
+
+    public int distanceToGoal(int player, int cell) {
+        return getDistances(player)[cell];
+    }
+
+    public boolean hasPathToGoal(int player) {
+        return distanceToGoal(player) != UNREACHABLE;
+    }
+
+    // Checks whether the player still reaches its goal when the edges first-second and third-fourth are
+    // closed. Searches depth first, always trying a neighbor that used to be closer to the goal first.
+    public boolean hasPathToGoal(int player, int first, int second, int third, int fourth) {
+        final int[] distance = getDistances(player);
+        final int start = board.getPlayerCell(player);
+        if (distance[start] == UNREACHABLE) {
+            return false;
+        }
+
+        Bits.clear(visited);
+        Bits.set(visited, start);
+        queue[0] = start;
+        int top = 1;
+        while (top > 0) {
+            final int current = queue[--top];
+            if (distance[current] == 0) {
+                return true;
+            }
+            int closer = -1;
+            for (Direction direction : Direction.VALUES) {
+                if (board.canMove(current, direction)) {
+                    final int next = board.neighbor(current, direction);
+                    if (!Bits.get(visited, next) && !isEdge(current, next, first, second)
+                            && !isEdge(current, next, third, fourth)) {
+                        Bits.set(visited, next);
+                        if (closer < 0 && distance[next] < distance[current]) {
+                            closer = next;
+                        } else {
+                            queue[top++] = next;
+                        }
+                    }
+                }
+            }
+            if (closer >= 0) {
+                queue[top++] = closer;
+            }
+        }
+        return false;
+    }
+
+    // Returns the distance of the player to its goal as if the edges first-second and third-fourth were
+    // closed. Closing edges only makes distances grow, so the current distances guide an A* search that
+    // follows the old paths and only looks around where they are cut. The search keeps the cells to visit
+    // in a bucket per estimated length, each bucket a linked list of entries.
+    public int distanceToGoal(int player, int first, int second, int third, int fourth) {
+        final int[] distance = getDistances(player);
+        final int start = board.getPlayerCell(player);
+        if (distance[start] == UNREACHABLE) {
+            return UNREACHABLE;
+        }
+        if (++generation == 0) {
+            Arrays.fill(seen, 0);
+            generation = 1;
+        }
+
+        Bits.clear(visited);
+        final int base = distance[start];
+        int entries = 0;
+        int last = 0;
+        seen[start] = generation;
+        steps[start] = 0;
+        entryCell[entries] = start;
+        entryNext[entries] = -1;
+        bucket[0] = entries++;
+        int result = UNREACHABLE;
+        for (int current = 0; current <= last; ++current) {
+            while (bucket[current] >= 0) {
+                final int entry = bucket[current];
+                bucket[current] = entryNext[entry];
+                final int cell = entryCell[entry];
+                if (Bits.get(visited, cell)) {
+                    continue;
+                }
+                Bits.set(visited, cell);
+                if (distance[cell] == 0) {
+                    result = steps[cell];
+                    break;
+                }
+                for (Direction direction : Direction.VALUES) {
+                    if (board.canMove(cell, direction)) {
+                        final int next = board.neighbor(cell, direction);
+                        final int step = steps[cell] + 1;
+                        if ((distance[next] != UNREACHABLE) && ((seen[next] != generation) || (step < steps[next]))
+                                && !isEdge(cell, next, first, second) && !isEdge(cell, next, third, fourth)) {
+                            seen[next] = generation;
+                            steps[next] = step;
+                            final int estimate = step + distance[next] - base;
+                            entryCell[entries] = next;
+                            entryNext[entries] = bucket[estimate];
+                            bucket[estimate] = entries++;
+                            last = Math.max(last, estimate);
+                        }
+                    }
+                }
+            }
+            if (result != UNREACHABLE) {
+                break;
+            }
+        }
+        Arrays.fill(bucket, 0, last + 1, -1);
+        return result;
+    }
+
+    private static boolean isEdge(int from, int to, int first, int second) {
+        return ((from == first) && (to == second)) || ((from == second) && (to == first));
+    }
+
+    public int shortestPath(int player, int[] path) {
+        final int[] distance = getDistances(player);
+        int cell = board.getPlayerCell(player);
+        if (distance[cell] == UNREACHABLE) {
+            return 0;
+        }
+
+        int length = 0;
+        path[length++] = cell;
+        while (distance[cell] > 0) {
+            for (Direction direction : Direction.VALUES) {
+                if (board.canMove(cell, direction)) {
+                    final int next = board.neighbor(cell, direction);
+                    if (distance[next] == distance[cell] - 1) {
+                        cell = next;
+                        break;
+                    }
+                }
+            }
+            path[length++] = cell;
+        }
+        return length;
+    }
+
+    public void invalidate() {
+        for (int i = 0; i < valid.length; ++i) {
+            valid[i] = false;
+        }
+    }
+
+    private int[] getDistances(int player) {
+        if (!valid[player]) {
+            compute(player);
+            valid[player] = true;
+        }
+        return distances[player];
+    }
+
+    private void compute(int player) {
+        final int[] distance = distances[player];
+        int tail = 0;
+        for (int cell = 0; cell < cellCount; ++cell) {
+            if (board.isGoal(player, cell)) {
+                distance[cell] = 0;
+                queue[tail++] = cell;
+            } else {
+                distance[cell] = UNREACHABLE;
+            }
+        }
+
+        int head = 0;
+        while (head < tail) {
+            final int current = queue[head++];
+            for (Direction direction : Direction.VALUES) {
+                if (board.canMove(current, direction)) {
+                    final int next = board.neighbor(current, direction);
+                    if (distance[next] == UNREACHABLE) {
+                        distance[next] = distance[current] + 1;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+        }
+    }
+
+    // Called by the board after the edges first-second and third-fourth have been closed by a wall.
+    void wallAdded(int first, int second, int third, int fourth) {
+        for (int player = 0; player < valid.length; ++player) {
+            if (valid[player]) {
+                update(distances[player], first, second, third, fourth);
+            }
+        }
+    }
+
+    // Called by the board after the edges first-second and third-fourth have been opened again.
+    void wallRemoved(int first, int second, int third, int fourth) {
+        for (int player = 0; player < valid.length; ++player) {
+            if (valid[player]) {
+                final int[] distance = distances[player];
+                Bits.clear(marked);
+                int tail = 0;
+                tail = relax(distance, first, second, tail);
+                tail = relax(distance, second, first, tail);
+                tail = relax(distance, third, fourth, tail);
+                tail = relax(distance, fourth, third, tail);
+                propagate(distance, 0, tail);
+            }
+        }
+    }
+
+    private int relax(int[] distance, int from, int to, int tail) {
+        if (distance[from] != UNREACHABLE && distance[from] + 1 < distance[to]) {
+            distance[to] = distance[from] + 1;
+            if (!Bits.get(marked, to)) {
+                Bits.set(marked, to);
+                queue[tail++ % cellCount] = to;
+            }
+        }
+        return tail;
+    }
+
+    private void propagate(int[] distance, int head, int tail) {
+        while (head != tail) {
+            final int current = queue[head++ % cellCount];
+            Bits.clear(marked, current);
+            for (Direction direction : Direction.VALUES) {
+                if (board.canMove(current, direction)) {
+                    tail = relax(distance, current, board.neighbor(current, direction), tail);
+                }
+            }
+        }
+    }
+
+    private void update(int[] distance, int first, int second, int third, int fourth) {
+        // Distances only grow when a wall is added. Cells that lost their last neighbor one step closer
+        // to the goal are collected in order of their old distance, then given new distances.
+        int seed1 = dependent(distance, first, second);
+        int seed2 = dependent(distance, third, fourth);
+        if (seed1 < 0 && seed2 < 0) {
+            return;
+        }
+        if (seed1 < 0 || (seed2 >= 0 && distance[seed2] < distance[seed1])) {
+            final int swap = seed1;
+            seed1 = seed2;
+            seed2 = swap;
+        }
+
+        Bits.clear(visited);
+        Bits.clear(marked);
+        int head = 0;
+        int tail = 0;
+        int affectedCount = 0;
+        while (seed1 >= 0 || head < tail) {
+            final int current;
+            if (seed1 >= 0 && (head == tail || distance[seed1] <= distance[queue[head]])) {
+                current = seed1;
+                seed1 = seed2;
+                seed2 = -1;
+                if (Bits.get(marked, current)) {
+                    continue;
+                }
+                Bits.set(marked, current);
+            } else {
+                current = queue[head++];
+            }
+
+            if (!isSupported(distance, current)) {
+                Bits.set(visited, current);
+                affected[affectedCount++] = current;
+                for (Direction direction : Direction.VALUES) {
+                    if (board.canMove(current, direction)) {
+                        final int next = board.neighbor(current, direction);
+                        if (distance[next] == distance[current] + 1 && !Bits.get(marked, next)) {
+                            Bits.set(marked, next);
+                            queue[tail++] = next;
+                        }
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < affectedCount; ++i) {
+            distance[affected[i]] = UNREACHABLE;
+        }
+
+        Bits.clear(marked);
+        tail = 0;
+        for (int i = 0; i < affectedCount; ++i) {
+            final int cell = affected[i];
+            for (Direction direction : Direction.VALUES) {
+                if (board.canMove(cell, direction)) {
+                    final int next = board.neighbor(cell, direction);
+                    if (distance[next] != UNREACHABLE && distance[next] + 1 < distance[cell]) {
+                        distance[cell] = distance[next] + 1;
+                    }
+                }
+            }
+            if (distance[cell] != UNREACHABLE) {
+                Bits.set(marked, cell);
+                queue[tail++ % cellCount] = cell;
+            }
+        }
+        propagate(distance, 0, tail);
+    }
+
+    private int dependent(int[] distance, int cell, int other) {
+        if (distance[cell] != UNREACHABLE && distance[other] != UNREACHABLE) {
+            if (distance[cell] == distance[other] + 1) {
+                return cell;
+            }
+            if (distance[other] == distance[cell] + 1) {
+                return other;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isSupported(int[] distance, int cell) {
+        if (distance[cell] == 0) {
+            return true;
+        }
+        for (Direction direction : Direction.VALUES) {
+            if (board.canMove(cell, direction)) {
+                final int next = board.neighbor(cell, direction);
+                if (distance[next] == distance[cell] - 1 && !Bits.get(visited, next)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
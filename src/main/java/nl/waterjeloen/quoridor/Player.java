@@ -8,14 +8,25 @@ public class Player {
     private Location location;
     private int walls;
     private final Function<Location, Boolean> wins;
+    private Strategy strategy;
 
     public Player(String name, Location location, Function<Location, Boolean> wins) {
+        this(name, location, wins, 10);
+    }
+
+    public Player(String name, Location location, Function<Location, Boolean> wins, int walls) {
         this.name = name;
         this.location = location;
-        this.walls = 10;
+        this.walls = walls;
         this.wins = wins;
     }
 
+    public Player copy() {
+        final Player copy = new Player(name, location, wins, walls);
+        copy.strategy = strategy;
+        return copy;
+    }
+
     public String getName() {
         return name;
     }
@@ -32,6 +43,10 @@ public class Player {
         --walls;
     }
 
+    public void addWall() {
+        ++walls;
+    }
+
     public boolean hasWalls() {
         return walls > 0;
     }
@@ -40,6 +55,18 @@ public class Player {
         return walls;
     }
 
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    public void setStrategy(Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    public boolean isHuman() {
+        return strategy == null;
+    }
+
     public String toString() {
         return name;
     }
@@ -0,0 +1,216 @@
+package nl.waterjeloen.quoridor;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// The original boolean[][] implementation of Board, kept to compare the optimized one against.
+class ReferenceBoard {
+    private final int size;
+    private final List<Player> players;
+    private int currentPlayer;
+    private final boolean[][] horizontalWalls;
+    private final boolean[][] verticalWalls;
+
+    private boolean finished;
+
+    ReferenceBoard(int size, Player... players) {
+        this.size = size;
+        this.players = List.of(players);
+        this.currentPlayer = 0;
+        this.horizontalWalls = new boolean[size - 1][size - 1];
+        this.verticalWalls = new boolean[size - 1][size - 1];
+        this.finished = false;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getPlayerCount() {
+        return players.size();
+    }
+
+    public Player getPlayer(int index) {
+        return players.get(index);
+    }
+
+    public Player getCurrentPlayer() {
+        return getPlayer(currentPlayer);
+    }
+
+    public boolean hasPlayer(Location location) {
+        return players.stream().anyMatch(p -> p.getLocation().equals(location));
+    }
+
+    public void movePlayer(Location location) {
+        if (!finished) {
+            getCurrentPlayer().changeLocation(location);
+            if (!getCurrentPlayer().hasWon()) {
+                nextPlayer();
+            }
+            else {
+                endGame();
+            }
+        }
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    private void endGame() {
+        finished = true;
+    }
+
+    public boolean hasWall(Location location, Direction side) {
+        final Location wallLocation = location.wall(side);
+
+        if (side.isHorizontal) {
+            final Location secondLocation = wallLocation.go(Direction.UP);
+            return (isValidWall(wallLocation) && verticalWalls[wallLocation.row][wallLocation.column]) ||
+                (isValidWall(secondLocation) && verticalWalls[secondLocation.row][secondLocation.column]);
+        } else {
+            final Location secondLocation = wallLocation.go(Direction.LEFT);
+            return (isValidWall(wallLocation) && horizontalWalls[wallLocation.row][wallLocation.column]) ||
+                (isValidWall(secondLocation) && horizontalWalls[secondLocation.row][secondLocation.column]);
+        }
+    }
+
+    public void addWall(Location location, Direction side, Direction direction) {
+        final Location wallLocation = location.wall(side).wall(direction);
+        if (isValidWall(wallLocation)) {
+            final boolean[][] walls = (side.isHorizontal) ? verticalWalls : horizontalWalls;
+            walls[wallLocation.row][wallLocation.column] = true;
+            nextPlayer();
+        }
+    }
+
+    public boolean hasHorizontalWall(Location location) {
+        return isValidWall(location) && horizontalWalls[location.row][location.column];
+    }
+
+    public void addHorizontalWall(Location location) {
+
+        if (isValidWall(location) && (!finished)) {
+            horizontalWalls[location.row][location.column] = true;
+            getCurrentPlayer().removeWall();
+            nextPlayer();
+        }
+    }
+
+    public boolean hasVerticalWall(Location location) {
+        return isValidWall(location) && verticalWalls[location.row][location.column];
+    }
+
+    public void addVerticalWall(Location location) {
+        if (isValidWall(location) && (!finished)) {
+            verticalWalls[location.row][location.column] = true;
+            getCurrentPlayer().removeWall();
+            nextPlayer();
+        }
+    }
+
+    // Puts a wall on the board without taking it from a player or passing the turn, to set up a position.
+    void placeWall(Location location, boolean horizontal) {
+        (horizontal ? horizontalWalls : verticalWalls)[location.row][location.column] = true;
+    }
+
+    // Finds where the pawn on the location can go the way Main used to: a step, a jump over a pawn, or a step
+    // aside from that pawn when a wall stands behind it. Cells off the board or taken by a pawn are left out.
+    public Set<Location> getPawnMoves(Location location) {
+        final Set<Location> result = new HashSet<>();
+        checkMove(result, location, Direction.DOWN, Direction.LEFT, Direction.RIGHT);
+        checkMove(result, location, Direction.UP, Direction.LEFT, Direction.RIGHT);
+        checkMove(result, location, Direction.LEFT, Direction.UP, Direction.DOWN);
+        checkMove(result, location, Direction.RIGHT, Direction.UP, Direction.DOWN);
+        result.removeIf(l -> !l.isValid(size) || hasPlayer(l));
+        return result;
+    }
+
+    private void checkMove(Set<Location> result, Location location, Direction direction, Direction... andThen) {
+        if (!hasWall(location, direction)) {
+            final Location next = location.go(direction);
+            if (!hasPlayer(next)) {
+                result.add(next);
+            } else if (!hasWall(next, direction)) {
+                result.add(next.go(direction));
+            } else {
+                for (Direction then : andThen) {
+                    if (!hasWall(next, then)) {
+                        result.add(next.go(then));
+                    }
+                }
+            }
+        }
+    }
+
+    // Tells whether the player to move may place a horizontal wall: it must fit, and every player must
+    // still be able to reach its goal.
+    public boolean canPlaceHorizontalWall(Location location) {
+        return (!finished) && getCurrentPlayer().hasWalls() && fitsHorizontalWall(location)
+            && keepsPaths(horizontalWalls, location);
+    }
+
+    public boolean canPlaceVerticalWall(Location location) {
+        return (!finished) && getCurrentPlayer().hasWalls() && fitsVerticalWall(location)
+            && keepsPaths(verticalWalls, location);
+    }
+
+    // Tells whether a horizontal wall neither crosses nor overlaps another wall, as Main used to check.
+    public boolean fitsHorizontalWall(Location location) {
+        return isValidWall(location) && !hasHorizontalWall(location) && !hasVerticalWall(location)
+            && !hasHorizontalWall(location.left()) && !hasHorizontalWall(location.right());
+    }
+
+    public boolean fitsVerticalWall(Location location) {
+        return isValidWall(location) && !hasHorizontalWall(location) && !hasVerticalWall(location)
+            && !hasVerticalWall(location.up()) && !hasVerticalWall(location.down());
+    }
+
+    private boolean keepsPaths(boolean[][] walls, Location location) {
+        walls[location.row][location.column] = true;
+        try {
+            for (Player player : players) {
+                if (getReachableLocations(player.getLocation()).stream().noneMatch(player::winsAt)) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            walls[location.row][location.column] = false;
+        }
+    }
+
+    private boolean isValidWall(Location location) {
+        return location.isValid(horizontalWalls.length, verticalWalls.length);
+    }
+
+    private void nextPlayer() {
+        currentPlayer = (currentPlayer + 1) % players.size();
+    }
+
+    public Set<Location> getReachableLocations(Location location) {
+        Set<Location> result = new HashSet<>();
+        result.add(location);
+        for (Direction direction : Direction.values()) {
+            extend(result, location, direction);
+        }
+        return result;
+    }
+
+    private void extend(Set<Location> result, Location location, Direction direction) {
+        if (!hasWall(location, direction)) {
+            Location next = location.go(direction);
+            if (next.isValid(size) && (!result.contains(next))) {
+                result.add(next);
+                for (Direction d : Direction.values()) {
+                    extend(result, next, d);
+                }
+            }
+        }
+    }
+
+}
+
+
@@ -0,0 +1,11 @@
+package nl.waterjeloen.quoridor;
+
+// Follows a search while it runs, from the thread that searches.
+public interface SearchListener {
+    // Called after every depth that was searched to the end, with the best line found so far.
+    void searched(SearchResult result);
+
+    // Called every thousand nodes or so; returning true stops the search, which then answers with the
+    // last depth that was searched to the end.
+    boolean stop(long nodes);
+}
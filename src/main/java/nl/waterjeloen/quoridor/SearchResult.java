@@ -0,0 +1,58 @@
+package nl.waterjeloen.quoridor;
+
+public class SearchResult {
+    private final int move;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+    private final long nanos;
+    private final int[] line;
+
+    public SearchResult(int move, int score, int depth, long nodes, long nanos) {
+        this(move, score, depth, nodes, nanos, (move != Move.NONE) ? new int[] { move } : new int[0]);
+    }
+
+    public SearchResult(int move, int score, int depth, long nodes, long nanos, int[] line) {
+        this.move = move;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.nanos = nanos;
+        this.line = line;
+    }
+
+    public int getMove() {
+        return move;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    // Returns the moves the search expects to be played from here, starting with its own move.
+    public int[] getLine() {
+        return line.clone();
+    }
+
+    public long getNodesPerSecond() {
+        return (nanos == 0) ? 0 : nodes * 1_000_000_000L / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "depth " + depth + ", score " + score + ", " + nodes + " nodes in " + (nanos / 1_000_000) + " ms ("
+            + getNodesPerSecond() + " nodes/s)";
+    }
+}
@@ -0,0 +1,284 @@
+package nl.waterjeloen.quoridor;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Hosts many games at once without a GUI. Every connection is a session with its own board, and every
+// session belongs to one of a few selector threads for its whole life, so a board is only ever touched by
+// one thread and needs no locks. Requests and replies are single lines of text:
+//
+//   NEW <size> <players>   OK 0                        starts a new game in this session
+//   MOVE <move>            OK <ply>, WIN <player>      plays a move, given as its number (see Move)
+//   UNDO                   OK <ply>                    takes back the last move
+//   BYE                                                closes the session
+//
+// Anything that cannot be done is answered with ERR and a reason, and leaves the game as it was.
+//
+//   Server [--port 7070] [--threads n]
+public class Server implements AutoCloseable {
+    public static final int DEFAULT_PORT = 7070;
+
+    private static final int MAX_SIZE = 31;
+    private static final int MAX_LINE = 64;
+
+    private final ServerSocketChannel channel;
+    private final List<Loop> loops;
+    private final Thread acceptor;
+    private final AtomicInteger sessions;
+    private volatile boolean running;
+
+    public Server(int port, int threads) throws IOException {
+        this.channel = ServerSocketChannel.open();
+        this.channel.bind(new InetSocketAddress(port), 1024);
+        this.loops = new ArrayList<>();
+        for (int i = 0; i < threads; ++i) {
+            loops.add(new Loop(i));
+        }
+        this.acceptor = new Thread(this::accept, "server-accept");
+        this.sessions = new AtomicInteger();
+        this.running = true;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        final Server server = new Server(port, threads);
+        server.start();
+        System.out.println("listening on port " + server.getPort() + " with " + threads + " threads");
+        server.acceptor.join();
+    }
+
+    public void start() {
+        for (Loop loop : loops) {
+            loop.thread.start();
+        }
+        acceptor.start();
+    }
+
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+    }
+
+    public int getSessionCount() {
+        return sessions.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        channel.close();
+        for (Loop loop : loops) {
+            loop.selector.wakeup();
+        }
+    }
+
+    // Hands the connections out to the selector threads in turn.
+    private void accept() {
+        int next = 0;
+        try {
+            while (true) {
+                final SocketChannel client = channel.accept();
+                client.configureBlocking(false);
+                client.socket().setTcpNoDelay(true);
+                loops.get(next).add(client);
+                next = (next + 1) % loops.size();
+            }
+        } catch (IOException e) {
+            // closed
+        }
+    }
+
+    private class Loop {
+        private final Selector selector;
+        private final Queue<SocketChannel> pending;
+        private final Thread thread;
+
+        private Loop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.pending = new ConcurrentLinkedQueue<>();
+            this.thread = new Thread(this::run, "server-" + index);
+        }
+
+        private void add(SocketChannel client) {
+            pending.add(client);
+            selector.wakeup();
+        }
+
+        private void run() {
+            try {
+                while (running) {
+                    selector.select();
+                    for (SocketChannel client = pending.poll(); client != null; client = pending.poll()) {
+                        try {
+                            client.register(selector, SelectionKey.OP_READ, new Session());
+                            sessions.incrementAndGet();
+                        } catch (ClosedChannelException e) {
+                            // gone before it got here
+                        }
+                    }
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        serve(key);
+                    }
+                    selector.selectedKeys().clear();
+                }
+            } catch (IOException e) {
+                // closed
+            }
+            for (SelectionKey key : selector.keys()) {
+                if (key.isValid()) {
+                    drop(key);
+                }
+            }
+            try {
+                for (SocketChannel client = pending.poll(); client != null; client = pending.poll()) {
+                    client.close();
+                }
+                selector.close();
+            } catch (IOException e) {
+                // nothing left to do
+            }
+        }
+
+        private void serve(SelectionKey key) {
+            final SocketChannel client = (SocketChannel) key.channel();
+            final Session session = (Session) key.attachment();
+            try {
+                if (key.isReadable() && ((client.read(session.in) < 0) || !session.handle())) {
+                    drop(key);
+                    return;
+                }
+                if (session.out.position() > 0) {
+                    session.out.flip();
+                    client.write(session.out);
+                    session.out.compact();
+                }
+                key.interestOps((session.out.position() > 0) ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+            } catch (IOException e) {
+                drop(key);
+            }
+        }
+
+        private void drop(SelectionKey key) {
+            key.cancel();
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                // nothing left to do
+            }
+            sessions.decrementAndGet();
+        }
+    }
+
+    // The game of one connection, with its buffers. Only the thread of its loop uses it.
+    private static class Session {
+        private final ByteBuffer in = ByteBuffer.allocate(MAX_LINE);
+        private ByteBuffer out = ByteBuffer.allocate(MAX_LINE);
+        private final StringBuilder line = new StringBuilder();
+        private Board board = Board.create(9, 2);
+
+        // Answers every complete line in the input, and tells whether the session goes on.
+        private boolean handle() {
+            in.flip();
+            while (in.hasRemaining()) {
+                final char c = (char) in.get();
+                if (c == '\n') {
+                    final String request = line.toString().trim();
+                    line.setLength(0);
+                    if (request.equals("BYE")) {
+                        return false;
+                    }
+                    reply(answer(request));
+                } else if (line.length() == MAX_LINE) {
+                    return false;
+                } else {
+                    line.append(c);
+                }
+            }
+            in.clear();
+            return true;
+        }
+
+        private String answer(String request) {
+            final String[] words = request.split(" ");
+            try {
+                switch (words[0]) {
+                    case "NEW":
+                        if (words.length != 3) {
+                            return "ERR usage: NEW <size> <players>";
+                        }
+                        final int size = Integer.parseInt(words[1]);
+                        if ((size < 3) || (size > MAX_SIZE)) {
+                            return "ERR size must be between 3 and " + MAX_SIZE;
+                        }
+                        board = Board.create(size, Integer.parseInt(words[2]));
+                        return "OK 0";
+                    case "MOVE":
+                        if (words.length != 2) {
+                            return "ERR usage: MOVE <move>";
+                        }
+                        final int move = Integer.parseInt(words[1]);
+                        if (board.isFinished()) {
+                            return "ERR the game is over";
+                        }
+                        if (!isLegal(move)) {
+                            return "ERR illegal move " + move;
+                        }
+                        board.makeMove(move);
+                        return board.isFinished() ? "WIN " + board.getCurrentPlayerIndex() : "OK " + board.getPly();
+                    case "UNDO":
+                        if (board.getPly() == 0) {
+                            return "ERR nothing to undo";
+                        }
+                        board.unmakeMove();
+                        return "OK " + board.getPly();
+                    default:
+                        return "ERR unknown request " + words[0];
+                }
+            } catch (IllegalArgumentException e) {
+                return "ERR " + e.getMessage();
+            }
+        }
+
+        private boolean isLegal(int move) {
+            if (Move.isWall(move) && (Move.index(move) >= board.getWallSlotCount())) {
+                return false;
+            }
+            return board.getMoves().isLegal(move);
+        }
+
+        private void reply(String answer) {
+            final byte[] bytes = (answer + "\n").getBytes(StandardCharsets.US_ASCII);
+            if (out.remaining() < bytes.length) {
+                final ByteBuffer larger = ByteBuffer.allocate(2 * (out.capacity() + bytes.length));
+                out.flip();
+                larger.put(out);
+                out = larger;
+            }
+            out.put(bytes);
+        }
+    }
+}
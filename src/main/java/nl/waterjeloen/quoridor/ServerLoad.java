@@ -0,0 +1,247 @@
+package nl.waterjeloen.quoridor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Keeps many sessions of a Server busy and reports how long it takes to answer a move. All sessions are
+// opened first and stay open; every thread then takes its sessions in turn, one move at a time, playing
+// mostly along the shortest path with now and then a random move. Every session follows its game on a
+// board of its own, so a wrong answer from the server stops the run.
+//
+//   ServerLoad [--host localhost] [--port 7070] [--sessions 1000] [--threads n] [--games 5] [--size 9]
+//       [--players 2] [--plies 200] [--seed 1]
+public class ServerLoad {
+    private static final int RANDOM_PERCENT = 20;
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String host = "localhost";
+        int port = Server.DEFAULT_PORT;
+        int sessions = 1000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int games = 5;
+        int size = 9;
+        int players = 2;
+        int plies = 200;
+        long seed = 1;
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--host":
+                    host = args[++i];
+                    break;
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--sessions":
+                    sessions = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--games":
+                    games = Integer.parseInt(args[++i]);
+                    break;
+                case "--size":
+                    size = Integer.parseInt(args[++i]);
+                    break;
+                case "--players":
+                    players = Integer.parseInt(args[++i]);
+                    break;
+                case "--plies":
+                    plies = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+
+        final List<List<Client>> groups = new ArrayList<>();
+        for (int t = 0; t < threads; ++t) {
+            groups.add(new ArrayList<>());
+        }
+        for (int i = 0; i < sessions; ++i) {
+            groups.get(i % threads).add(new Client(host, port, size, players, seed + i));
+        }
+
+        final int maxPlies = plies;
+        final int maxGames = games;
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final List<Future<long[]>> results = new ArrayList<>();
+        final long start = System.nanoTime();
+        for (List<Client> group : groups) {
+            results.add(pool.submit(() -> run(group, maxGames, maxPlies)));
+        }
+        long[] latencies = new long[0];
+        try {
+            for (Future<long[]> result : results) {
+                final long[] times = result.get();
+                final int count = latencies.length;
+                latencies = Arrays.copyOf(latencies, count + times.length);
+                System.arraycopy(times, 0, latencies, count, times.length);
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+            for (List<Client> group : groups) {
+                for (Client client : group) {
+                    client.close();
+                }
+            }
+        }
+        final double seconds = (System.nanoTime() - start) / 1e9;
+
+        Arrays.sort(latencies);
+        System.out.printf(Locale.ROOT, "%d moves in %d sessions on %d threads in %.1f s (%.0f moves/s)%n",
+            latencies.length, sessions, threads, seconds, latencies.length / seconds);
+        final StringBuilder line = new StringBuilder("latency per move (us):");
+        for (double percentile : PERCENTILES) {
+            line.append(String.format(Locale.ROOT, " p%s %.1f", format(percentile),
+                percentile(latencies, percentile) / 1e3));
+        }
+        line.append(String.format(Locale.ROOT, " max %.1f", (latencies.length > 0) ? latencies[latencies.length - 1] / 1e3 : 0.0));
+        System.out.println(line);
+    }
+
+    // Plays the given number of games in every session, a move at a time in each session in turn, and
+    // returns how long every move took in nanoseconds.
+    private static long[] run(List<Client> clients, int games, int maxPlies) throws IOException {
+        long[] latencies = new long[1024];
+        int count = 0;
+        final List<Client> active = new ArrayList<>(clients);
+        while (!active.isEmpty()) {
+            for (int i = active.size() - 1; i >= 0; --i) {
+                final Client client = active.get(i);
+                if (client.stuck || client.board.isFinished() || (client.board.getPly() >= maxPlies)) {
+                    if (++client.games == games) {
+                        active.remove(i);
+                        continue;
+                    }
+                    client.newGame();
+                }
+                if (count == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, 2 * count);
+                }
+                final long latency = client.move();
+                if (latency >= 0) {
+                    latencies[count++] = latency;
+                }
+            }
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        final int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static String format(double percentile) {
+        return (percentile == Math.rint(percentile)) ? Integer.toString((int) percentile) : Double.toString(percentile);
+    }
+
+    private static class Client {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final OutputStream out;
+        private final int size;
+        private final int players;
+        private final SplittableRandom random;
+        private Board board;
+        private int[] moves;
+        private int games;
+        private boolean stuck;
+
+        private Client(String host, int port, int size, int players, long seed) throws IOException {
+            this.socket = new Socket(host, port);
+            this.socket.setTcpNoDelay(true);
+            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            this.out = socket.getOutputStream();
+            this.size = size;
+            this.players = players;
+            this.random = new SplittableRandom(seed);
+            newGame();
+        }
+
+        private void newGame() throws IOException {
+            board = Board.create(size, players);
+            stuck = false;
+            moves = new int[board.getMoves().getMaxMoves()];
+            expect("NEW " + size + " " + players, "OK 0");
+        }
+
+        // Plays a move and returns how long the server took to answer it, or -1 when there is no move.
+        private long move() throws IOException {
+            final int move = choose();
+            if (move == Move.NONE) {
+                stuck = true;
+                return -1;
+            }
+            board.makeMove(move);
+            final String expected = board.isFinished() ? "WIN " + board.getCurrentPlayerIndex() : "OK " + board.getPly();
+            final long start = System.nanoTime();
+            expect("MOVE " + move, expected);
+            return System.nanoTime() - start;
+        }
+
+        private int choose() {
+            final int count = board.getMoves().generate(moves);
+            if (count == 0) {
+                return Move.NONE;
+            }
+            if (random.nextInt(100) < RANDOM_PERCENT) {
+                return moves[random.nextInt(count)];
+            }
+            // A pawn boxed in by the others has no moves, and then any wall will do.
+            final int player = board.getCurrentPlayerIndex();
+            int best = Move.NONE;
+            int bestDistance = Integer.MAX_VALUE;
+            for (int i = 0; i < count; ++i) {
+                if (Move.isPawn(moves[i])) {
+                    final int distance = board.getPaths().distanceToGoal(player, Move.index(moves[i]));
+                    if (distance < bestDistance) {
+                        best = moves[i];
+                        bestDistance = distance;
+                    }
+                }
+            }
+            return (best != Move.NONE) ? best : moves[random.nextInt(count)];
+        }
+
+        private void expect(String request, String expected) throws IOException {
+            out.write((request + "\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            final String answer = in.readLine();
+            if (!expected.equals(answer)) {
+                throw new IllegalStateException("server answered " + answer + " to " + request + " instead of " + expected);
+            }
+        }
+
+        private void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // nothing left to do
+            }
+        }
+    }
+}
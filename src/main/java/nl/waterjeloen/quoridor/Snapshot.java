@@ -0,0 +1,157 @@
+package nl.waterjeloen.quoridor;
+
+// A position of a board that never changes, so any thread can read it while the board plays on. Taking
+// one copies only the pawns and the counters; the walls are shared with the board, which makes copies
+// of its own before it changes them again. A board that keeps its walls between two snapshots hands the
+// same walls to both.
+public final class Snapshot {
+    private final Geometry geometry;
+    private final int size;
+    private final int wallSize;
+    private final int currentPlayer;
+    private final int[] playerCells;
+    private final int[] walls;
+    private final String[] names;
+    private final long[][] goals;
+    private final long[] horizontalWalls;
+    private final long[] verticalWalls;
+    private final byte[] sides;
+    private final boolean finished;
+    private final long hash;
+    private final long wallHash;
+    private final int ply;
+    private final int lastMove;
+
+    Snapshot(Geometry geometry, int currentPlayer, int[] playerCells, int[] walls, String[] names, long[][] goals,
+             long[] horizontalWalls, long[] verticalWalls, byte[] sides, boolean finished, long hash, long wallHash,
+             int ply, int lastMove) {
+        this.geometry = geometry;
+        this.size = geometry.getSize();
+        this.wallSize = size - 1;
+        this.currentPlayer = currentPlayer;
+        this.playerCells = playerCells;
+        this.walls = walls;
+        this.names = names;
+        this.goals = goals;
+        this.horizontalWalls = horizontalWalls;
+        this.verticalWalls = verticalWalls;
+        this.sides = sides;
+        this.finished = finished;
+        this.hash = hash;
+        this.wallHash = wallHash;
+        this.ply = ply;
+        this.lastMove = lastMove;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getPlayerCount() {
+        return playerCells.length;
+    }
+
+    public int getCurrentPlayerIndex() {
+        return currentPlayer;
+    }
+
+    public int getPlayerCell(int player) {
+        return playerCells[player];
+    }
+
+    public Location getPlayerLocation(int player) {
+        return location(playerCells[player]);
+    }
+
+    public String getPlayerName(int player) {
+        return names[player];
+    }
+
+    public int getWalls(int player) {
+        return walls[player];
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    public long getWallHash() {
+        return wallHash;
+    }
+
+    public int getPly() {
+        return ply;
+    }
+
+    // Returns the move that led to this position, or Move.NONE at the start of the game.
+    public int getLastMove() {
+        return lastMove;
+    }
+
+    public int row(int cell) {
+        return cell / size;
+    }
+
+    public int column(int cell) {
+        return cell % size;
+    }
+
+    public Location location(int cell) {
+        return Location.of(row(cell), column(cell));
+    }
+
+    public boolean isGoal(int player, int cell) {
+        return Bits.get(goals[player], cell);
+    }
+
+    public int getWallSlotCount() {
+        return wallSize * wallSize;
+    }
+
+    public int wallRow(int slot) {
+        return slot / wallSize;
+    }
+
+    public int wallColumn(int slot) {
+        return slot % wallSize;
+    }
+
+    public boolean hasHorizontalWall(int slot) {
+        return Bits.get(horizontalWalls, slot);
+    }
+
+    public boolean hasVerticalWall(int slot) {
+        return Bits.get(verticalWalls, slot);
+    }
+
+    public boolean canMove(int cell, Direction direction) {
+        return (sides[cell] & (direction.bit() | direction.bit() << Board.EDGE_SHIFT)) == 0;
+    }
+
+    // Marks the cells that can be reached from the cell, ignoring the pawns, and returns how many there are.
+    public int fillReachable(int cell, long[] result) {
+        final int[] queue = new int[size * size];
+        Bits.clear(result);
+        Bits.set(result, cell);
+        queue[0] = cell;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            final int current = queue[head++];
+            for (Direction direction : Direction.VALUES) {
+                if (canMove(current, direction)) {
+                    final int next = geometry.neighbor(current, direction);
+                    if (!Bits.get(result, next)) {
+                        Bits.set(result, next);
+                        queue[tail++] = next;
+                    }
+                }
+            }
+        }
+        return tail;
+    }
+}
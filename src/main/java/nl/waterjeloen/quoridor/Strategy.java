@@ -0,0 +1,8 @@
+package nl.waterjeloen.quoridor;
+
+public interface Strategy {
+    int selectMove(Board board);
+
+    default void shutdown() {
+    }
+}
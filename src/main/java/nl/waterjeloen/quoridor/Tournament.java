@@ -0,0 +1,410 @@
+package nl.waterjeloen.quoridor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongFunction;
+
+// Plays engines against each other without a GUI: every pair meets the same number of times with both
+// colors, each game is a task on a fixed thread pool, and the results are summarized as win rates and
+// Elo ratings. A game that runs out of plies, or in which a player has no move, is a draw. The games can
+// be saved to an archive as they come in.
+//
+//   Tournament [--size 9] [--games 10] [--threads n] [--plies 200] [--opening 2] [--seed 1] [--record file]
+//       [--book file] engine...
+//
+// An engine is greedy, random, alphabeta:d<depth>, alphabeta:<millis>ms, montecarlo:<playouts>p or
+// montecarlo:<millis>ms, optionally followed by +book to play from the opening book first and +endgame to
+// play races without walls perfectly. An alphabeta engine scores with the weights in a file, as written by
+// Tuner, when its name ends in :<file>, as in alphabeta:d2:weights.txt.
+public class Tournament {
+    private static final int ELO_ITERATIONS = 2000;
+    private static final double ELO_SCALE = 400;
+    private static final long UNLIMITED = 24 * 60 * 60 * 1000;
+
+    private final int size;
+    private final int games;
+    private final int maxPlies;
+    private final int opening;
+    private final long seed;
+    private final List<Engine> engines;
+    private final int[][] wins;
+    private final int[][] draws;
+
+    public Tournament(int size, int games, int maxPlies, int opening, long seed, List<Engine> engines) {
+        this.size = size;
+        this.games = games;
+        this.maxPlies = maxPlies;
+        this.opening = opening;
+        this.seed = seed;
+        this.engines = engines;
+        this.wins = new int[engines.size()][engines.size()];
+        this.draws = new int[engines.size()][engines.size()];
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        int size = 9;
+        int games = 10;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int plies = 200;
+        int opening = 2;
+        long seed = 1;
+        Path record = null;
+        OpeningBook book = null;
+        final List<String> names = new ArrayList<>();
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--size":
+                    size = Integer.parseInt(args[++i]);
+                    break;
+                case "--games":
+                    games = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--plies":
+                    plies = Integer.parseInt(args[++i]);
+                    break;
+                case "--opening":
+                    opening = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--record":
+                    record = Path.of(args[++i]);
+                    break;
+                case "--book":
+                    book = new OpeningBook(Path.of(args[++i]), 1);
+                    break;
+                default:
+                    names.add(args[i]);
+                    break;
+            }
+        }
+        if (names.size() < 2) {
+            names.addAll(List.of("greedy", "alphabeta:d1", "alphabeta:d2", "montecarlo:2000p"));
+        }
+        final List<Engine> engines = new ArrayList<>();
+        for (String name : names) {
+            engines.add(Engine.parse(name, book));
+        }
+
+        final Tournament tournament = new Tournament(size, games, plies, opening, seed, engines);
+        final long start = System.nanoTime();
+        final int played;
+        if (record != null) {
+            try (GameWriter writer = new GameWriter(record, size)) {
+                played = tournament.play(threads, writer);
+            }
+        } else {
+            played = tournament.play(threads, null);
+        }
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        tournament.print();
+        System.out.printf(Locale.ROOT, "%d games in %.1f s on %d threads (%.2f games/s)%n",
+            played, seconds, threads, played / seconds);
+    }
+
+    public int play(int threads, GameWriter writer) throws InterruptedException, IOException {
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final List<Future<Game>> results = new ArrayList<>();
+        try {
+            int round = 0;
+            for (int i = 0; i < engines.size(); ++i) {
+                for (int j = i + 1; j < engines.size(); ++j) {
+                    for (int k = 0; k < games; ++k) {
+                        final Game game = (k % 2 == 0) ? new Game(i, j, seed + round) : new Game(j, i, seed + round);
+                        results.add(pool.submit(() -> play(game)));
+                        ++round;
+                    }
+                }
+            }
+            for (Future<Game> result : results) {
+                final Game game = result.get();
+                record(game);
+                if (writer != null) {
+                    writer.write(game.board);
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return results.size();
+    }
+
+    public void print() {
+        final int count = engines.size();
+        final double[] ratings = ratings();
+        final Integer[] order = new Integer[count];
+        for (int i = 0; i < count; ++i) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(ratings[b], ratings[a]));
+
+        int width = 6;
+        for (Engine engine : engines) {
+            width = Math.max(width, engine.getName().length());
+        }
+        final String name = "%-" + width + "s";
+        System.out.printf(Locale.ROOT, name + " %6s %5s %5s %5s %7s %6s%n", "engine", "games", "won", "drawn", "lost", "score", "elo");
+        for (int i : order) {
+            int won = 0;
+            int drawn = 0;
+            int lost = 0;
+            for (int j = 0; j < count; ++j) {
+                won += wins[i][j];
+                drawn += draws[i][j];
+                lost += wins[j][i];
+            }
+            final int played = won + drawn + lost;
+            System.out.printf(Locale.ROOT, name + " %6d %5d %5d %5d %6.1f%% %+6.0f%n", engines.get(i).getName(),
+                played, won, drawn, lost, percentage(won, drawn, played), ratings[i]);
+        }
+
+        System.out.println();
+        System.out.printf(Locale.ROOT, name, "");
+        for (int j : order) {
+            System.out.printf(Locale.ROOT, " %" + width + "s", engines.get(j).getName());
+        }
+        System.out.println();
+        for (int i : order) {
+            System.out.printf(Locale.ROOT, name, engines.get(i).getName());
+            for (int j : order) {
+                final int played = wins[i][j] + draws[i][j] + wins[j][i];
+                final String cell = (i == j) ? "-" : String.format(Locale.ROOT, "%.1f%%", percentage(wins[i][j], draws[i][j], played));
+                System.out.printf(Locale.ROOT, " %" + width + "s", cell);
+            }
+            System.out.println();
+        }
+    }
+
+    // Fits Bradley-Terry ratings to all results at once, so the order in which the games finished does not
+    // matter. Every engine also gets one draw against the average, which keeps a perfect score finite.
+    private double[] ratings() {
+        final int count = engines.size();
+        final double[] ratings = new double[count];
+        for (int iteration = 0; iteration < ELO_ITERATIONS; ++iteration) {
+            for (int i = 0; i < count; ++i) {
+                double score = 0.5;
+                double expected = expected(ratings[i], 0);
+                double played = 1;
+                for (int j = 0; j < count; ++j) {
+                    final int meetings = wins[i][j] + draws[i][j] + wins[j][i];
+                    score += wins[i][j] + 0.5 * draws[i][j];
+                    expected += meetings * expected(ratings[i], ratings[j]);
+                    played += meetings;
+                }
+                ratings[i] += ELO_SCALE * (score - expected) / played;
+            }
+            double mean = 0;
+            for (double rating : ratings) {
+                mean += rating / count;
+            }
+            for (int i = 0; i < count; ++i) {
+                ratings[i] -= mean;
+            }
+        }
+        return ratings;
+    }
+
+    private Game play(Game game) {
+        final Board board = Board.create(size, 2);
+        game.board = board;
+        final Strategy[] strategies = {
+            engines.get(game.first).create(game.seed),
+            engines.get(game.second).create(game.seed + 1)
+        };
+        try {
+            final SplittableRandom random = new SplittableRandom(game.seed);
+            final int[] moves = new int[board.getMoves().getMaxMoves()];
+            while ((board.getPly() < opening) && !board.isFinished()) {
+                final int count = board.getMoves().generatePawnMoves(moves, 0);
+                if (count == 0) {
+                    break;
+                }
+                board.makeMove(moves[random.nextInt(count)]);
+            }
+
+            while (!board.isFinished() && (board.getPly() < maxPlies)) {
+                final int player = board.getCurrentPlayerIndex();
+                final int move = strategies[player].selectMove(board);
+                if (move == Move.NONE) {
+                    break;
+                }
+                if (!board.getMoves().isLegal(move)) {
+                    throw new IllegalStateException(engines.get(game.engine(player)).getName() + " played illegal move "
+                        + Move.toString(board, move));
+                }
+                board.makeMove(move);
+            }
+            game.winner = board.isFinished() ? game.engine(board.getCurrentPlayerIndex()) : -1;
+            return game;
+        } finally {
+            strategies[0].shutdown();
+            strategies[1].shutdown();
+        }
+    }
+
+    private void record(Game game) {
+        if (game.winner < 0) {
+            ++draws[game.first][game.second];
+            ++draws[game.second][game.first];
+        } else {
+            final int loser = (game.winner == game.first) ? game.second : game.first;
+            ++wins[game.winner][loser];
+        }
+    }
+
+    private static double expected(double rating, double opponent) {
+        return 1 / (1 + Math.pow(10, (opponent - rating) / ELO_SCALE));
+    }
+
+    private static double percentage(int won, int drawn, int played) {
+        return (played == 0) ? 0 : 100 * (won + 0.5 * drawn) / played;
+    }
+
+    private static class Game {
+        private final int first;
+        private final int second;
+        private final long seed;
+        private int winner;
+        private Board board;
+
+        private Game(int first, int second, long seed) {
+            this.first = first;
+            this.second = second;
+            this.seed = seed;
+        }
+
+        private int engine(int player) {
+            return (player == 0) ? first : second;
+        }
+    }
+
+    public abstract static class Engine {
+        private final String name;
+
+        protected Engine(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public abstract Strategy create(long seed);
+
+        public static Engine parse(String name, OpeningBook book) {
+            if (name.endsWith("+endgame")) {
+                final Engine engine = parse(name.substring(0, name.length() - "+endgame".length()), book);
+                return engine(name, seed -> new Endgame(0).with(engine.create(seed)));
+            }
+            if (name.endsWith("+book")) {
+                if (book == null) {
+                    throw new IllegalArgumentException(name + " needs an opening book");
+                }
+                final Engine engine = parse(name.substring(0, name.length() - "+book".length()), null);
+                return engine(name, seed -> book.with(engine.create(seed)));
+            }
+            final int colon = name.indexOf(':');
+            final String kind = (colon < 0) ? name : name.substring(0, colon);
+            final String option = (colon < 0) ? "" : name.substring(colon + 1);
+            switch (kind) {
+                case "greedy":
+                    return engine(name, seed -> Tournament::greedy);
+                case "random":
+                    return engine(name, seed -> {
+                        final SplittableRandom random = new SplittableRandom(seed);
+                        return board -> random(board, random);
+                    });
+                case "alphabeta":
+                    if (option.indexOf(':') >= 0) {
+                        final String[] parts = option.split(":", 2);
+                        return alphabeta(name, parts[0], evaluator(parts[1]));
+                    }
+                    return alphabeta(name, option, null);
+                case "montecarlo":
+                    if (option.endsWith("ms")) {
+                        final long millis = Long.parseLong(option.substring(0, option.length() - 2));
+                        return engine(name, seed -> new MonteCarlo(1, millis, Long.MAX_VALUE, 16));
+                    }
+                    if (option.endsWith("p")) {
+                        final long playouts = Long.parseLong(option.substring(0, option.length() - 1));
+                        return engine(name, seed -> new MonteCarlo(1, UNLIMITED, playouts, 16));
+                    }
+                    break;
+                default:
+                    break;
+            }
+            throw new IllegalArgumentException("unknown engine " + name);
+        }
+
+        private static Engine engine(String name, LongFunction<Strategy> factory) {
+            return new Engine(name) {
+                @Override
+                public Strategy create(long seed) {
+                    return factory.apply(seed);
+                }
+            };
+        }
+
+        private static Engine alphabeta(String name, String limit, LinearEvaluator evaluator) {
+            if (limit.endsWith("ms")) {
+                final long millis = Long.parseLong(limit.substring(0, limit.length() - 2));
+                return engine(name, seed -> new AlphaBeta(millis, AlphaBeta.MAX_PLY - 1, table(), evaluator));
+            }
+            if (limit.startsWith("d")) {
+                final int depth = Integer.parseInt(limit.substring(1));
+                return engine(name, seed -> new AlphaBeta(UNLIMITED, depth, table(), evaluator));
+            }
+            throw new IllegalArgumentException("unknown engine " + name);
+        }
+
+        private static LinearEvaluator evaluator(String file) {
+            try {
+                return LinearEvaluator.load(Path.of(file));
+            } catch (IOException e) {
+                throw new IllegalArgumentException("cannot read weights from " + file, e);
+            }
+        }
+
+        private static TranspositionTable table() {
+            return new TranspositionTable(16, TranspositionTable.Replacement.TWO_TIER);
+        }
+    }
+
+    // Walks the shortest path to the goal and never places a wall.
+    private static int greedy(Board board) {
+        final int[] moves = new int[4 * board.getPlayerCount()];
+        final int count = board.getMoves().generatePawnMoves(moves, 0);
+        final int player = board.getCurrentPlayerIndex();
+        int best = Move.NONE;
+        int bestDistance = PathFinder.UNREACHABLE;
+        for (int i = 0; i < count; ++i) {
+            final int distance = board.getPaths().distanceToGoal(player, Move.index(moves[i]));
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = moves[i];
+            }
+        }
+        return best;
+    }
+
+    private static int random(Board board, SplittableRandom random) {
+        final int[] moves = new int[board.getMoves().getMaxMoves()];
+        final int count = board.getMoves().generate(moves);
+        return (count == 0) ? Move.NONE : moves[random.nextInt(count)];
+    }
+}
@@ -0,0 +1,134 @@
+package nl.waterjeloen.quoridor;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+// A fixed-size hash table of search results that many threads share without locks. Every entry is two
+// longs: the key xor-ed with the data, and the data itself. A reader only accepts an entry when both
+// halves match its key, so an entry that is torn by a concurrent writer reads as a miss.
+public class TranspositionTable {
+    public static final long MISS = 0;
+
+    public static final int EXACT = 0;
+    public static final int LOWER = 1;
+    public static final int UPPER = 2;
+
+    public enum Replacement {
+        ALWAYS,
+        DEPTH,
+        TWO_TIER
+    }
+
+    private static final VarHandle ENTRIES = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private static final long VALID = 1L << 63;
+    private static final int MOVE_BITS = 20;
+    private static final int SCORE_SHIFT = MOVE_BITS;
+    private static final int DEPTH_SHIFT = SCORE_SHIFT + 16;
+    private static final int BOUND_SHIFT = DEPTH_SHIFT + 8;
+    private static final int AGE_SHIFT = BOUND_SHIFT + 2;
+
+    private final long[] entries;
+    private final int bucketMask;
+    private final Replacement replacement;
+    private volatile int age;
+
+    public TranspositionTable(int megabytes, Replacement replacement) {
+        final long bytes = (long) megabytes << 20;
+        final int buckets = Integer.highestOneBit((int) Math.max(1, Math.min(bytes / 32, 1 << 26)));
+        this.entries = new long[buckets * 4];
+        this.bucketMask = buckets - 1;
+        this.replacement = replacement;
+        this.age = 0;
+    }
+
+    public int getCapacity() {
+        return entries.length / 2;
+    }
+
+    public void newSearch() {
+        age = (age + 1) & 0xFF;
+    }
+
+    public void clear() {
+        for (int i = 0; i < entries.length; ++i) {
+            ENTRIES.setOpaque(entries, i, 0L);
+        }
+    }
+
+    public long probe(long key) {
+        if (Metrics.ENABLED) {
+            Metrics.TABLE_PROBES.increment();
+        }
+        final int bucket = bucket(key);
+        for (int i = 0; i < 2; ++i) {
+            final int index = bucket + 2 * i;
+            final long data = (long) ENTRIES.getOpaque(entries, index + 1);
+            final long check = (long) ENTRIES.getOpaque(entries, index);
+            if ((data != 0) && ((check ^ data) == key)) {
+                if (Metrics.ENABLED) {
+                    Metrics.TABLE_HITS.increment();
+                }
+                return data;
+            }
+        }
+        return MISS;
+    }
+
+    public void store(long key, int move, int score, int depth, int bound) {
+        final long data = VALID
+            | (move & ((1L << MOVE_BITS) - 1))
+            | ((long) (score & 0xFFFF) << SCORE_SHIFT)
+            | ((long) Math.min(depth, 0xFF) << DEPTH_SHIFT)
+            | ((long) bound << BOUND_SHIFT)
+            | ((long) age << AGE_SHIFT);
+
+        final int bucket = bucket(key);
+        final int slot = slot(bucket, key, depth);
+        if (slot >= 0) {
+            final int index = bucket + 2 * slot;
+            ENTRIES.setOpaque(entries, index, key ^ data);
+            ENTRIES.setOpaque(entries, index + 1, data);
+        }
+    }
+
+    // Returns the entry of the bucket to overwrite, or a negative number when the table keeps what it has.
+    private int slot(int bucket, long key, int depth) {
+        final long data = (long) ENTRIES.getOpaque(entries, bucket + 1);
+        final boolean same = (((long) ENTRIES.getOpaque(entries, bucket) ^ data) == key);
+        final boolean replaceable = (data == 0) || same || (age(data) != age) || (depth >= depth(data));
+        switch (replacement) {
+            case ALWAYS:
+                return 0;
+            case DEPTH:
+                return replaceable ? 0 : -1;
+            default:
+                return replaceable ? 0 : 1;
+        }
+    }
+
+    private int bucket(long key) {
+        return ((int) (key ^ (key >>> 32)) & bucketMask) * 4;
+    }
+
+    public static int move(long data) {
+        final int move = (int) (data & ((1L << MOVE_BITS) - 1));
+        return (move == ((1 << MOVE_BITS) - 1)) ? Move.NONE : move;
+    }
+
+    public static int score(long data) {
+        return (short) (data >>> SCORE_SHIFT);
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    public static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & 0x3;
+    }
+
+    private static int age(long data) {
+        return (int) (data >>> AGE_SHIFT) & 0xFF;
+    }
+}
@@ -0,0 +1,194 @@
+package nl.waterjeloen.quoridor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+// Fits the weights of a LinearEvaluator to the games in archives: every position of a finished game is
+// labelled with whether the player to move went on to win, and the weights are changed one at a time, by
+// a step that halves from 16 to 1, for as long as that makes the evaluation predict the labels better,
+// but never past LinearEvaluator.MAX_WEIGHT.
+// A score turns into a chance to win through a logistic curve; its scale is fitted first, to the starting
+// weights, unless it is given. The error is the mean squared difference between chances and labels.
+//
+//   Tuner [--weights file] [--scale k] [--passes 100] [--output weights.txt] archive...
+public class Tuner {
+    private static final int FIRST_STEP = 16;
+
+    private final FeatureBatch batch;
+    private final byte[] labels;
+    private final int[] scores;
+    private double scale;
+
+    public Tuner(FeatureBatch batch, byte[] labels) {
+        this.batch = batch;
+        this.labels = labels;
+        this.scores = new int[batch.size()];
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path weights = null;
+        double scale = 0;
+        int passes = 100;
+        Path output = Path.of("weights.txt");
+        final List<Path> archives = new ArrayList<>();
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--weights":
+                    weights = Path.of(args[++i]);
+                    break;
+                case "--scale":
+                    scale = Double.parseDouble(args[++i]);
+                    break;
+                case "--passes":
+                    passes = Integer.parseInt(args[++i]);
+                    break;
+                case "--output":
+                    output = Path.of(args[++i]);
+                    break;
+                default:
+                    archives.add(Path.of(args[i]));
+                    break;
+            }
+        }
+        if (archives.isEmpty()) {
+            System.err.println("usage: Tuner [--weights file] [--scale k] [--passes 100] [--output weights.txt] archive...");
+            System.exit(1);
+        }
+
+        final long start = System.nanoTime();
+        final FeatureBatch batch = new FeatureBatch(1 << 16);
+        byte[] labels = new byte[1 << 16];
+        int games = 0;
+        for (Path archive : archives) {
+            try (GameReader reader = new GameReader(archive)) {
+                labels = collect(reader, batch, labels);
+                games += reader.getGameCount();
+            }
+        }
+        System.out.printf(Locale.ROOT, "%d positions of %d games in %.1f s%n",
+            batch.size(), games, (System.nanoTime() - start) / 1e9);
+        if (batch.size() == 0) {
+            System.err.println("there are no finished games to learn from");
+            System.exit(1);
+        }
+
+        final Tuner tuner = new Tuner(batch, labels);
+        LinearEvaluator evaluator = (weights == null) ? LinearEvaluator.defaults() : LinearEvaluator.load(weights);
+        tuner.scale = (scale > 0) ? scale : tuner.fitScale(evaluator);
+        System.out.printf(Locale.ROOT, "scale %.5f, error %.6f: %s%n", tuner.scale, tuner.error(evaluator), evaluator);
+        evaluator = tuner.tune(evaluator, passes);
+        evaluator.save(output, String.format(Locale.ROOT, "fitted to %d positions, scale %.5f, error %.6f",
+            batch.size(), tuner.scale, tuner.error(evaluator)));
+        System.out.println("wrote " + output);
+    }
+
+    // Adds the positions of the finished games in the archive to the batch, each with a label in the
+    // labels array, which grows with the batch and is returned.
+    public static byte[] collect(GameReader reader, FeatureBatch batch, byte[] labels) {
+        final Board board = Board.create(reader.getSize(), reader.getPlayerCount());
+        final Features features = new Features(board);
+        int[] moves = new int[256];
+        for (int game = 0; game < reader.getGameCount(); ++game) {
+            final int winner = reader.getWinner(game);
+            if (winner < 0) {
+                continue;
+            }
+            if (moves.length < reader.getPlies(game)) {
+                moves = new int[reader.getPlies(game)];
+            }
+            final int plies = reader.read(game, board, moves);
+            for (int ply = plies - 1; ply >= 0; --ply) {
+                board.unmakeMove();
+                final int row = features.extract(batch);
+                if (row >= labels.length) {
+                    labels = Arrays.copyOf(labels, 2 * labels.length);
+                }
+                labels[row] = (byte) ((board.getCurrentPlayerIndex() == winner) ? 1 : 0);
+            }
+        }
+        return labels;
+    }
+
+    // Finds the scale of the logistic curve that fits the labels best for the weights, by walking in
+    // ever smaller steps while the error goes down.
+    public double fitScale(LinearEvaluator evaluator) {
+        final int[] scores = evaluate(evaluator);
+        double best = 1;
+        double error = error(scores, best);
+        for (double step = 0.5; step > 1e-4; step /= 2) {
+            boolean improved = true;
+            while (improved) {
+                improved = false;
+                for (double candidate : new double[] { best + step, best - step }) {
+                    if (candidate > 0) {
+                        final double e = error(scores, candidate);
+                        if (e < error) {
+                            error = e;
+                            best = candidate;
+                            improved = true;
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    // Improves the weights a step at a time, trying each weight one step up and down per pass, and moves
+    // on to a smaller step once a pass changes nothing or the passes run out.
+    public LinearEvaluator tune(LinearEvaluator evaluator, int passes) {
+        final int[] weights = evaluator.getWeights();
+        double error = error(evaluator);
+        for (int step = FIRST_STEP; step >= 1; step /= 2) {
+            for (int pass = 0; pass < passes; ++pass) {
+                boolean improved = false;
+                for (int feature = 0; feature < Features.COUNT; ++feature) {
+                    for (int delta : new int[] { step, -step }) {
+                        if (Math.abs(weights[feature] + delta) > LinearEvaluator.MAX_WEIGHT) {
+                            continue;
+                        }
+                        weights[feature] += delta;
+                        final double e = error(new LinearEvaluator(weights));
+                        if (e < error) {
+                            error = e;
+                            improved = true;
+                            break;
+                        }
+                        weights[feature] -= delta;
+                    }
+                }
+                System.out.printf(Locale.ROOT, "step %d, pass %d, error %.6f: %s%n",
+                    step, pass + 1, error, new LinearEvaluator(weights));
+                if (!improved) {
+                    break;
+                }
+            }
+        }
+        return new LinearEvaluator(weights);
+    }
+
+    public double error(LinearEvaluator evaluator) {
+        return error(evaluate(evaluator), scale);
+    }
+
+    private int[] evaluate(LinearEvaluator evaluator) {
+        evaluator.score(batch, scores);
+        return scores;
+    }
+
+    // A score of a hundred, a step on the path, is worth the scale in the exponent of the logistic curve.
+    private double error(int[] scores, double scale) {
+        final int rows = batch.size();
+        double sum = 0;
+        for (int row = 0; row < rows; ++row) {
+            final double chance = 1 / (1 + Math.exp(-scale * scores[row] / 100));
+            final double difference = labels[row] - chance;
+            sum += difference * difference;
+        }
+        return sum / rows;
+    }
+}
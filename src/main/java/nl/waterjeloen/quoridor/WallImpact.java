@@ -0,0 +1,155 @@
+package nl.waterjeloen.quoridor;
+
+// Tells which walls could lengthen the path of a player to its goal. It keeps one shortest path per
+// player as the wall slots that would cut it; a wall that does not cut the path leaves the distance of
+// that player as it is, which is answered without a search. A path is only found again when it is asked
+// for after a wall cut it or after the pawn of its player moved. The paths from before a wall was added
+// are kept, so taking the wall away again restores them instead of invalidating them.
+// It also counts the walls that meet in every corner, to know which walls could close off a region.
+public class WallImpact {
+    private final Board board;
+    private final int size;
+    private final int wallSize;
+    private final int[] path;
+    private final long[][] cuts;
+    private final boolean[] valid;
+    private final byte[] corners;
+    private final long[][][] saved;
+    private final boolean[][] savedValid;
+    private final int[] savedWalls;
+    private int walls;
+
+    WallImpact(Board board, int playerCount) {
+        this.board = board;
+        this.size = board.getSize();
+        this.wallSize = size - 1;
+        this.path = new int[size * size];
+        this.cuts = new long[playerCount][Bits.words(2 * wallSize * wallSize)];
+        this.valid = new boolean[playerCount];
+        this.corners = new byte[(size + 1) * (size + 1)];
+        this.saved = new long[playerCount][2 * wallSize * wallSize][];
+        this.savedValid = new boolean[playerCount][2 * wallSize * wallSize];
+        this.savedWalls = new int[2 * wallSize * wallSize];
+        for (int slot = 0; slot < wallSize * wallSize; ++slot) {
+            if (board.hasHorizontalWall(slot)) {
+                countCorners(Move.horizontalWall(slot), 1);
+                ++walls;
+            }
+            if (board.hasVerticalWall(slot)) {
+                countCorners(Move.verticalWall(slot), 1);
+                ++walls;
+            }
+        }
+    }
+
+    // Tells whether a wall would cut the shortest path of the player; if not, the wall leaves the distance
+    // of the player to its goal the same.
+    public boolean cuts(int player, int wall) {
+        return Bits.get(getCuts(player), bit(wall));
+    }
+
+    // Returns the distance of the player to its goal as if the wall were placed, without placing it.
+    public int distanceWith(int player, int wall) {
+        if (!cuts(player, wall)) {
+            return board.getPaths().distanceToGoal(player);
+        }
+        final Geometry geometry = board.getGeometry();
+        final int bit = bit(wall);
+        return board.getPaths().distanceToGoal(player,
+            geometry.wallCell(bit, 0), geometry.wallCell(bit, 1), geometry.wallCell(bit, 2), geometry.wallCell(bit, 3));
+    }
+
+    // Tells whether a corner of the wall grid lies on the border or on a wall.
+    boolean touches(int row, int column) {
+        return (row == 0) || (row == size) || (column == 0) || (column == size) || (corners[corner(row, column)] > 0);
+    }
+
+    // Returns the wall slots that cut the shortest path of the player, as a bit per slot and orientation.
+    long[] getCuts(int player) {
+        if (!valid[player]) {
+            Bits.clear(cuts[player]);
+            final int length = board.getPaths().shortestPath(player, path);
+            for (int i = 1; i < length; ++i) {
+                markCuts(cuts[player], Math.min(path[i - 1], path[i]), Math.max(path[i - 1], path[i]));
+            }
+            valid[player] = true;
+        }
+        return cuts[player];
+    }
+
+    static int bit(int wall) {
+        return 2 * Move.index(wall) + ((Move.type(wall) == Move.HORIZONTAL_WALL) ? 0 : 1);
+    }
+
+    // Called by the board after a wall has been added.
+    void wallAdded(int wall) {
+        final int bit = bit(wall);
+        countCorners(wall, 1);
+        savedWalls[bit] = ++walls;
+        for (int player = 0; player < valid.length; ++player) {
+            savedValid[player][bit] = valid[player];
+            if (valid[player]) {
+                if (saved[player][bit] == null) {
+                    saved[player][bit] = new long[cuts[player].length];
+                }
+                System.arraycopy(cuts[player], 0, saved[player][bit], 0, cuts[player].length);
+                valid[player] = !Bits.get(cuts[player], bit);
+            }
+        }
+    }
+
+    // Called by the board after a wall has been taken away. When it was the last wall added, the paths
+    // are as they were before it came.
+    void wallRemoved(int wall) {
+        final int bit = bit(wall);
+        countCorners(wall, -1);
+        final boolean last = (savedWalls[bit] == walls);
+        savedWalls[bit] = 0;
+        --walls;
+        for (int player = 0; player < valid.length; ++player) {
+            valid[player] = last && savedValid[player][bit];
+            if (valid[player]) {
+                System.arraycopy(saved[player][bit], 0, cuts[player], 0, cuts[player].length);
+            }
+        }
+    }
+
+    // Called by the board after the pawn of a player has moved.
+    void pawnMoved(int player) {
+        valid[player] = false;
+    }
+
+    private void markCuts(long[] cut, int from, int to) {
+        final int row = from / size;
+        final int column = from % size;
+        if (to == from + size) {
+            if (column < wallSize) {
+                Bits.set(cut, 2 * board.wallSlot(row, column));
+            }
+            if (column > 0) {
+                Bits.set(cut, 2 * board.wallSlot(row, column - 1));
+            }
+        } else {
+            if (row < wallSize) {
+                Bits.set(cut, 2 * board.wallSlot(row, column) + 1);
+            }
+            if (row > 0) {
+                Bits.set(cut, 2 * board.wallSlot(row - 1, column) + 1);
+            }
+        }
+    }
+
+    private void countCorners(int wall, int change) {
+        final int slot = Move.index(wall);
+        final int row = slot / wallSize;
+        final int column = slot % wallSize;
+        for (int i = 0; i < 3; ++i) {
+            final int corner = (Move.type(wall) == Move.HORIZONTAL_WALL) ? corner(row + 1, column + i) : corner(row + i, column + 1);
+            corners[corner] += change;
+        }
+    }
+
+    private int corner(int row, int column) {
+        return row * (size + 1) + column;
+    }
+}
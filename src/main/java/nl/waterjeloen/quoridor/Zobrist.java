@@ -0,0 +1,36 @@
+package nl.waterjeloen.quoridor;
+
+import java.util.SplittableRandom;
+
+// Random keys for every part of a position. The seed is fixed, so boards of the same size and player
+// count hash the same position to the same key, also across threads and runs.
+final class Zobrist {
+    private static final long SEED = 0x51_75_6F_72_69_64_6F_72L;
+
+    final long[] horizontalWalls;
+    final long[] verticalWalls;
+    final long[][] pawns;
+    final long[][] walls;
+    final long[] players;
+
+    Zobrist(int size, int playerCount, int maxWalls) {
+        final SplittableRandom random = new SplittableRandom(SEED);
+        this.horizontalWalls = keys(random, (size - 1) * (size - 1));
+        this.verticalWalls = keys(random, (size - 1) * (size - 1));
+        this.pawns = new long[playerCount][];
+        this.walls = new long[playerCount][];
+        for (int i = 0; i < playerCount; ++i) {
+            pawns[i] = keys(random, size * size);
+            walls[i] = keys(random, maxWalls + 1);
+        }
+        this.players = keys(random, playerCount);
+    }
+
+    private static long[] keys(SplittableRandom random, int count) {
+        final long[] keys = new long[count];
+        for (int i = 0; i < count; ++i) {
+            keys[i] = random.nextLong();
+        }
+        return keys;
+    }
+}